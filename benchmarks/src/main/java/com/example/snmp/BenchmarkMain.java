@@ -0,0 +1,39 @@
+package com.example.snmp;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line (e.g. a benchmark regex,
+ * -p vendor=ZTE, -f 2); unless a result format is given, results are written as JSON to
+ * results/jmh-yyyyMMdd-HHmmss.json so runs can be compared over time.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers()
+                || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            File dir = new File("results");
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IllegalStateException("Cannot create " + dir.getAbsolutePath());
+            }
+            String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            options.resultFormat(ResultFormatType.JSON).result(new File(dir, "jmh-" + stamp + ".json").getPath());
+        }
+        new Runner(options.build()).run();
+    }
+}
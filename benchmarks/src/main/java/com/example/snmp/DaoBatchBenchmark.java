@@ -0,0 +1,116 @@
+package com.example.snmp;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.smi.OctetString;
+
+/**
+ * Batch assembly of the DAO writes, per row, against a JdbcStub connection: Dao.saveData
+ * (BATCH strategy), the CSV stream of the LOAD_DATA strategy and Dao.updateOnuSerialRawBulk
+ * of discovery, including its onuoid index lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(DaoBatchBenchmark.ONUS)
+public class DaoBatchBenchmark {
+
+    static final int ONUS = 4096;
+    private static final String MODE = "benchmark";
+
+    @Param({ "HUAWEI", "ZTE" })
+    public OltFixture.Vendor vendor;
+
+    private final byte[] csvBuffer = new byte[8192];
+    private Dao dao;
+    private OltFixture fixture;
+    private List<DbWriter.Chunk> chunks;
+    private List<OnuSerialWithOidClass> discoveryRows;
+
+    @Setup
+    public void setup() {
+        fixture = OltFixture.generate(vendor, ONUS, 42);
+        dao = new Dao(MODE, JdbcStub.dataSource());
+
+        // Polled metrics of the whole node in one chunk, as DbWriter hands them over
+        OnuMetricDecoder decoder = OnuMetricDecoders.forNode(fixture.getNode(), fixture.getNodeType());
+        OnuMetricBlock block = new OnuMetricBlock(ONUS);
+        int[] slots = new int[ONUS];
+        for (int i = 0; i < ONUS; i++) {
+            decoder.decode(fixture.getRx()[i].getVariable(), fixture.getDistance()[i].getVariable(),
+                    fixture.getOltRx()[i].getVariable(),
+                    fixture.getTemperature()[i] != null ? fixture.getTemperature()[i].getVariable() : null, block, i);
+            slots[i] = i;
+        }
+        block.convert(decoder);
+        chunks = Collections.singletonList(new DbWriter.Chunk(fixture.getPlan(), block, slots, 0, ONUS));
+
+        // Discovery rows and the onuoid index they are resolved against
+        NodeType nodeType = fixture.getNodeType();
+        OidSuffixIndex index = new OidSuffixIndex(nodeType.getOidOnuSerial(), ONUS);
+        HelperClass hc = new HelperClass();
+        discoveryRows = new ArrayList<>(ONUS);
+        for (int i = 0; i < ONUS; i++) {
+            NodeSerialOid nso = fixture.getPlan().get(i);
+            index.put(nso.getOidSerial(), nso.getId());
+
+            OctetString lastOnline = fixture.getLastOnline()[i];
+            OnuSerial onuSerial = new OnuSerial();
+            onuSerial.setName(fixture.getDescriptions()[i].toString());
+            onuSerial.setSerial(hc.macToCustomFormat(fixture.getSerials()[i], new char[64]));
+            Timestamp online = hc.parseSnmpDate(lastOnline);
+            onuSerial.setOnuLastOnline(online);
+            OnuSerialWithOidClass row = new OnuSerialWithOidClass();
+            row.setOnuSerial(onuSerial);
+            row.setOidOnuSerial(nso.getOidSerial());
+            discoveryRows.add(row);
+        }
+        ReferenceCache.forMode(MODE).invalidateOnuOidIndex(nodeType.getId());
+        ReferenceCache.forMode(MODE).onuOidIndex(nodeType.getId(), id -> index);
+    }
+
+    @Benchmark
+    public long saveData() {
+        dao.saveData(chunks);
+        return JdbcStub.count();
+    }
+
+    @Benchmark
+    public long loadDataCsv() throws IOException {
+        long bytes = 0;
+        try (ChunkCsvInputStream csv = new ChunkCsvInputStream(chunks)) {
+            int n;
+            while ((n = csv.read(csvBuffer, 0, csvBuffer.length)) > 0) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long updateOnuSerialRawBulk() throws SQLException {
+        dao.updateOnuSerialRawBulk(discoveryRows, fixture.getNodeType(), fixture.getNode());
+        return JdbcStub.count();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.snmp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Varbind decode loop of a metric poll, per ONU: the original App.sendSnmpGet loop
+ * (Float.parseFloat of each Variable's toString, results in NodeSerialOid) against the
+ * vendor OnuMetricDecoder writing raw values into an OnuMetricBlock plus the block conversion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(DecodeBenchmark.ONUS)
+public class DecodeBenchmark {
+
+    static final int ONUS = 4096;
+
+    @Param({ "HUAWEI", "ZTE" })
+    public OltFixture.Vendor vendor;
+
+    private OltFixture fixture;
+    private OnuMetricDecoder decoder;
+
+    @Setup
+    public void setup() {
+        fixture = OltFixture.generate(vendor, ONUS, 42);
+        decoder = OnuMetricDecoders.forNode(fixture.getNode(), fixture.getNodeType());
+    }
+
+    @Benchmark
+    public Object stringParse() {
+        boolean huawei = fixture.getNode().getType() > 10;
+        VariableBinding[] rx = fixture.getRx();
+        VariableBinding[] distances = fixture.getDistance();
+        VariableBinding[] oltRx = fixture.getOltRx();
+        VariableBinding[] temperatures = fixture.getTemperature();
+        for (int m = 0; m < ONUS; m++) {
+            float rxPower = 0;
+            int distance = 0;
+            float oltRxPower = 0;
+            float temperature = 0;
+            try {
+                float rawValue = Float.parseFloat(rx[m].getVariable().toString());
+                distance = Integer.parseInt(distances[m].getVariable().toString());
+                float rawOltRxPowerValue = Float.parseFloat(oltRx[m].getVariable().toString());
+                if (huawei) {
+                    rxPower = (rawValue == 65535f) ? 0f : (rawValue * 0.002f - 30f);
+                    oltRxPower = (rawOltRxPowerValue == -80000f) ? 0f : (rawOltRxPowerValue / 1000f);
+                } else {
+                    float rawTemperature = Float.parseFloat(temperatures[m].getVariable().toString());
+                    rxPower = (rawValue > 0) ? 0f : (rawValue / 100f);
+                    oltRxPower = ((rawOltRxPowerValue / 100f) > 100f) ? 0f : (100f - rawOltRxPowerValue / 100f);
+                    temperature = (rawTemperature > 100f) ? 0f : rawTemperature;
+                }
+            } catch (NumberFormatException e) {
+                rxPower = 0f;
+            }
+            NodeSerialOid nso = fixture.getPlan().get(m);
+            nso.setOnuRxPower(rxPower);
+            nso.setOnuDistance(distance);
+            nso.setOnuOltRxPower(oltRxPower);
+            nso.setOnuTemperature(temperature);
+        }
+        return fixture.getPlan();
+    }
+
+    @Benchmark
+    public Object metricDecoder() {
+        OnuMetricBlock block = new OnuMetricBlock(ONUS);
+        VariableBinding[] rx = fixture.getRx();
+        VariableBinding[] distances = fixture.getDistance();
+        VariableBinding[] oltRx = fixture.getOltRx();
+        VariableBinding[] temperatures = fixture.getTemperature();
+        for (int m = 0; m < ONUS; m++) {
+            decoder.decode(rx[m].getVariable(), distances[m].getVariable(), oltRx[m].getVariable(),
+                    temperatures[m] != null ? temperatures[m].getVariable() : null, block, m);
+        }
+        block.convert(decoder);
+        return block;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.snmp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snmp4j.smi.OctetString;
+
+/**
+ * Per-ONU decoding of a discovery walk: HelperClass.parseSnmpDate and macToCustomFormat on
+ * the text SNMP4J makes of the OctetString (as discovery did before) against the overloads
+ * that decode the raw bytes (OctetStringDecoder).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(DiscoveryDecodeBenchmark.ONUS)
+public class DiscoveryDecodeBenchmark {
+
+    static final int ONUS = 4096;
+
+    @Param({ "HUAWEI", "ZTE" })
+    public OltFixture.Vendor vendor;
+
+    private final HelperClass hc = new HelperClass();
+    private final char[] serialBuffer = new char[64];
+    private OctetString[] lastOnline;
+    private OctetString[] serials;
+
+    @Setup
+    public void setup() {
+        OltFixture fixture = OltFixture.generate(vendor, ONUS, 42);
+        lastOnline = fixture.getLastOnline();
+        serials = fixture.getSerials();
+    }
+
+    @Benchmark
+    public void parseSnmpDateText(Blackhole bh) {
+        for (OctetString value : lastOnline) {
+            bh.consume(hc.parseSnmpDate(value.toString()));
+        }
+    }
+
+    @Benchmark
+    public void parseSnmpDateBytes(Blackhole bh) {
+        for (OctetString value : lastOnline) {
+            bh.consume(hc.parseSnmpDate(value));
+        }
+    }
+
+    @Benchmark
+    public void macToCustomFormatText(Blackhole bh) {
+        for (OctetString value : serials) {
+            bh.consume(hc.macToCustomFormat(value.toString()));
+        }
+    }
+
+    @Benchmark
+    public void macToCustomFormatBytes(Blackhole bh) {
+        for (OctetString value : serials) {
+            bh.consume(hc.macToCustomFormat(value, serialBuffer));
+        }
+    }
+}
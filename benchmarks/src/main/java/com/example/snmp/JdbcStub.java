@@ -0,0 +1,80 @@
+package com.example.snmp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource whose connections accept statements without a server: parameters and batches
+ * are counted and dropped, executeBatch returns at once. The DAO's batch assembly is measured
+ * on its own; every JDBC call adds the same small proxy dispatch cost, so runs stay comparable
+ * but absolute numbers are not those of Connector/J.
+ */
+final class JdbcStub {
+
+    private static long parameters;
+    private static long batches;
+
+    private JdbcStub() {
+    }
+
+    static DataSource dataSource() {
+        return proxy(DataSource.class, (p, method, args) -> {
+            if (method.getName().equals("getConnection")) return connection();
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    /**
+     * @return Parameters set and batches added since the start, so the work cannot be optimised away
+     */
+    static long count() {
+        return parameters + batches;
+    }
+
+    private static Connection connection() {
+        return proxy(Connection.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, JdbcStub::statement);
+                case "createStatement":
+                    return proxy(Statement.class, JdbcStub::statement);
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object statement(Object proxy, java.lang.reflect.Method method, Object[] args) {
+        String name = method.getName();
+        if (name.startsWith("set") && args != null && args.length == 2) {
+            parameters++;
+            return null;
+        }
+        switch (name) {
+            case "addBatch":
+                batches++;
+                return null;
+            case "executeBatch":
+                return new int[0];
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(JdbcStub.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.snmp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Generated OLT with the shape of the Huawei and ZTE OLTs the poller sees: column OIDs, ONU
+ * indexes (port ifIndex plus ONU id), poll plan rows, the varbinds of a metric poll and the
+ * serial / last-online values of a discovery walk. A fixed seed makes every run use the same
+ * data.
+ *
+ * Huawei: metrics are Integer32 (rx in 0.002 dB steps above -30 dBm, OLT rx in 0.001 dBm,
+ * 65535 / -80000 for offline ONUs), no temperature, DateAndTime with a +05:45 offset.
+ * ZTE: rx as a decimal OctetString in 0.01 dBm, OLT rx as Integer32, temperature in degrees,
+ * DateAndTime without offset.
+ */
+public final class OltFixture {
+
+    public enum Vendor { HUAWEI, ZTE }
+
+    private static final int OFFLINE_PERCENT = 3;
+
+    private final Vendor vendor;
+    private final Node node;
+    private final NodeType nodeType;
+    private final List<NodeSerialOid> plan = new ArrayList<>();
+    private final VariableBinding[] rx;
+    private final VariableBinding[] distance;
+    private final VariableBinding[] oltRx;
+    private final VariableBinding[] temperature;
+    private final OctetString[] serials;
+    private final OctetString[] lastOnline;
+    private final OctetString[] descriptions;
+
+    private OltFixture(Vendor vendor, int onus) {
+        this.vendor = vendor;
+        this.node = new Node();
+        this.nodeType = new NodeType();
+        this.rx = new VariableBinding[onus];
+        this.distance = new VariableBinding[onus];
+        this.oltRx = new VariableBinding[onus];
+        this.temperature = new VariableBinding[onus];
+        this.serials = new OctetString[onus];
+        this.lastOnline = new OctetString[onus];
+        this.descriptions = new OctetString[onus];
+    }
+
+    /**
+     * @param vendor OLT vendor
+     * @param onus Number of ONUs
+     * @param seed Random seed
+     * @return Fixture
+     */
+    public static OltFixture generate(Vendor vendor, int onus, long seed) {
+        OltFixture f = new OltFixture(vendor, onus);
+        Random random = new Random(seed);
+        boolean huawei = vendor == Vendor.HUAWEI;
+
+        f.node.setId(huawei ? 1201 : 901);
+        f.node.setType(huawei ? 12 : 9);
+        f.node.setIp(huawei ? "10.12.0.1" : "10.9.0.1");
+        f.node.setSnmpcommunity("public");
+
+        NodeType t = f.nodeType;
+        t.setId(f.node.getType());
+        t.setName(huawei ? "MA5800" : "C300");
+        t.setVendor(huawei ? "huawei" : "zte");
+        if (huawei) {
+            t.setOidOnuRxPower("1.3.6.1.4.1.2011.6.128.1.1.2.51.1.4");
+            t.setOidOltRxPower("1.3.6.1.4.1.2011.6.128.1.1.2.51.1.6");
+            t.setOidOnuDistance("1.3.6.1.4.1.2011.6.128.1.1.2.46.1.20");
+            t.setOidOnuSerial("1.3.6.1.4.1.2011.6.128.1.1.2.43.1.3");
+            t.setOidOnuDescription("1.3.6.1.4.1.2011.6.128.1.1.2.43.1.9");
+            t.setOidOnuLastOnDateTime("1.3.6.1.4.1.2011.6.128.1.1.2.101.1.6");
+        } else {
+            t.setOidOnuRxPower("1.3.6.1.4.1.3902.1012.3.50.12.1.1.10");
+            t.setOidOltRxPower("1.3.6.1.4.1.3902.1015.1010.11.2.1.2");
+            t.setOidOnuDistance("1.3.6.1.4.1.3902.1012.3.11.4.1.2");
+            t.setOidOnuTemperature("1.3.6.1.4.1.3902.1012.3.50.12.1.1.14");
+            t.setOidOnuSerial("1.3.6.1.4.1.3902.1012.3.28.1.1.5");
+            t.setOidOnuDescription("1.3.6.1.4.1.3902.1012.3.28.1.1.3");
+            t.setOidOnuLastOnDateTime("1.3.6.1.4.1.3902.1012.3.28.2.1.5");
+        }
+
+        // 16 ports per card, up to 64 ONUs per port
+        for (int i = 0; i < onus; i++) {
+            int card = 1 + i / (16 * 64);
+            int port = (i / 64) % 16;
+            int onuId = huawei ? i % 64 : 1 + i % 64;
+            long portIndex = huawei
+                    ? 4194304000L + card * 8192L + port * 256L   // 0xFA000000 frame 0
+                    : 268566528L + card * 256L + port;           // 0x10010000 rack 1 shelf 1
+            int[] index = { (int) portIndex, onuId };
+            String suffix = (portIndex & 0xffffffffL) + "." + onuId;
+            boolean offline = random.nextInt(100) < OFFLINE_PERCENT;
+
+            NodeSerialOid nso = new NodeSerialOid();
+            nso.setId(100000 + i);
+            nso.setSerialId(500000 + i);
+            nso.setOnuid(onuId);
+            nso.setNodeType(t.getId());
+            nso.setOnuIndex(index);
+            nso.setOidOnuRxPower(t.getOidOnuRxPower() + "." + suffix);
+            nso.setOidOltRxPower(t.getOidOltRxPower() + "." + suffix);
+            nso.setOidDistance(t.getOidOnuDistance() + "." + suffix);
+            nso.setOidSerial(t.getOidOnuSerial() + "." + suffix);
+            if (!huawei) {
+                nso.setOidTemperature(t.getOidOnuTemperature() + "." + suffix);
+            }
+            f.plan.add(nso);
+
+            f.distance[i] = bind(t.getOidOnuDistance(), suffix, new Integer32(offline ? 0 : 150 + random.nextInt(19000)));
+            if (huawei) {
+                // -23 dBm +- 5 as (dBm + 30) / 0.002
+                int rxRaw = offline ? 65535 : (int) ((-23f + (random.nextFloat() - 0.5f) * 10f + 30f) / 0.002f);
+                f.rx[i] = bind(t.getOidOnuRxPower(), suffix, new Integer32(rxRaw));
+                f.oltRx[i] = bind(t.getOidOltRxPower(), suffix, new Integer32(offline ? -80000 : -30000 + random.nextInt(8000)));
+                f.temperature[i] = null;
+            } else {
+                int rxRaw = offline ? 1 : -1800 - random.nextInt(1000);
+                f.rx[i] = bind(t.getOidOnuRxPower(), suffix, new OctetString(Integer.toString(rxRaw)));
+                f.oltRx[i] = bind(t.getOidOltRxPower(), suffix, new Integer32(offline ? 65535 : 7400 + random.nextInt(500)));
+                f.temperature[i] = bind(t.getOidOnuTemperature(), suffix, new Integer32(offline ? 2147483647 : 30 + random.nextInt(30)));
+            }
+
+            byte[] serial = new byte[8];
+            random.nextBytes(serial);
+            byte[] vendorId = (huawei ? "HWTC" : "ZTEG").getBytes();
+            System.arraycopy(vendorId, 0, serial, 0, 4);
+            serial[4] = (byte) (0x80 | serial[4]);  // keeps the value binary, as on real OLTs
+            f.serials[i] = new OctetString(serial);
+            f.lastOnline[i] = dateAndTime(random, huawei);
+            f.descriptions[i] = new OctetString("CUST-" + (700000 + random.nextInt(300000)) + "-FTTH");
+        }
+        return f;
+    }
+
+    private static VariableBinding bind(String column, String suffix, Variable value) {
+        return new VariableBinding(new OID(column + "." + suffix), value);
+    }
+
+    // 2025 local time; Huawei adds direction and offset (+05:45)
+    private static OctetString dateAndTime(Random random, boolean withOffset) {
+        byte[] value = new byte[withOffset ? 11 : 8];
+        value[0] = 0x07;
+        value[1] = (byte) 0xE9;
+        value[2] = (byte) (1 + random.nextInt(12));
+        value[3] = (byte) (1 + random.nextInt(28));
+        value[4] = (byte) random.nextInt(24);
+        value[5] = (byte) random.nextInt(60);
+        value[6] = (byte) random.nextInt(60);
+        value[7] = 0;
+        if (withOffset) {
+            value[8] = '+';
+            value[9] = 5;
+            value[10] = 45;
+        }
+        return new OctetString(value);
+    }
+
+    public Vendor getVendor() {
+        return vendor;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public NodeType getNodeType() {
+        return nodeType;
+    }
+
+    public List<NodeSerialOid> getPlan() {
+        return plan;
+    }
+
+    public int size() {
+        return plan.size();
+    }
+
+    public VariableBinding[] getRx() {
+        return rx;
+    }
+
+    public VariableBinding[] getDistance() {
+        return distance;
+    }
+
+    public VariableBinding[] getOltRx() {
+        return oltRx;
+    }
+
+    /**
+     * @return Temperature varbinds (ZTE), entries are null for Huawei
+     */
+    public VariableBinding[] getTemperature() {
+        return temperature;
+    }
+
+    public OctetString[] getSerials() {
+        return serials;
+    }
+
+    public OctetString[] getLastOnline() {
+        return lastOnline;
+    }
+
+    public OctetString[] getDescriptions() {
+        return descriptions;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.snmp;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Building the GET PDUs of a poll, per ONU: parsing each ONU's stored OID strings with
+ * new OID(String) against appending its compact index to the pre-parsed column OIDs
+ * (OnuOidPlan).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(PduBuildBenchmark.ONUS)
+public class PduBuildBenchmark {
+
+    static final int ONUS = 4096;
+
+    @Param({ "HUAWEI", "ZTE" })
+    public OltFixture.Vendor vendor;
+
+    @Param({ "32" })
+    public int batchSize;
+
+    private List<NodeSerialOid> plan;
+    private OnuOidPlan oidPlan;
+    private boolean withTemperature;
+
+    @Setup
+    public void setup() {
+        OltFixture fixture = OltFixture.generate(vendor, ONUS, 42);
+        plan = fixture.getPlan();
+        oidPlan = new OnuOidPlan(fixture.getNodeType());
+        withTemperature = fixture.getNodeType().getOidOnuTemperature() != null;
+    }
+
+    @Benchmark
+    public void oidFromString(Blackhole bh) {
+        for (int start = 0; start < ONUS; start += batchSize) {
+            PDU rx = new PDU();
+            PDU distance = new PDU();
+            PDU oltRx = new PDU();
+            PDU temperature = new PDU();
+            for (NodeSerialOid nso : plan.subList(start, Math.min(start + batchSize, ONUS))) {
+                rx.add(new VariableBinding(new OID(nso.getOidOnuRxPower())));
+                distance.add(new VariableBinding(new OID(nso.getOidDistance())));
+                oltRx.add(new VariableBinding(new OID(nso.getOidOltRxPower())));
+                if (withTemperature) {
+                    temperature.add(new VariableBinding(new OID(nso.getOidTemperature())));
+                }
+            }
+            bh.consume(rx);
+            bh.consume(distance);
+            bh.consume(oltRx);
+            bh.consume(temperature);
+        }
+    }
+
+    @Benchmark
+    public void oidFromPlan(Blackhole bh) {
+        for (int start = 0; start < ONUS; start += batchSize) {
+            PDU rx = new PDU();
+            PDU distance = new PDU();
+            PDU oltRx = new PDU();
+            PDU temperature = new PDU();
+            for (NodeSerialOid nso : plan.subList(start, Math.min(start + batchSize, ONUS))) {
+                rx.add(new VariableBinding(oidPlan.oid(OnuOidPlan.RX, nso)));
+                distance.add(new VariableBinding(oidPlan.oid(OnuOidPlan.DISTANCE, nso)));
+                oltRx.add(new VariableBinding(oidPlan.oid(OnuOidPlan.OLT_RX, nso)));
+                if (withTemperature) {
+                    temperature.add(new VariableBinding(oidPlan.oid(OnuOidPlan.TEMPERATURE, nso)));
+                }
+            }
+            bh.consume(rx);
+            bh.consume(distance);
+            bh.consume(oltRx);
+            bh.consume(temperature);
+        }
+    }
+}
@@ -15,6 +15,18 @@ rm -f "$log_dir"/log_query_onudata_*.txt
 final_log="$log_dir/log_query_onudata_final_${profile}_$(date +%Y%m%d_%H%M%S).txt"
 sudo docker run --rm --network host --name log_query_onudata_final ${dockername} "0" "$profile" > "$final_log" 2>&1 &
 
+# SINGLE_JVM=1: one container polls every type–region unit on a shared pool
+if [ "${SINGLE_JVM:-0}" = "1" ]; then
+    logfile="$log_dir/log_query_onudata_all_${profile}_$(date +%Y%m%d_%H%M%S).txt"
+    types_csv=$(IFS=,; echo "${types[*]}")
+    regions_csv=$(IFS=,; echo "${regions[*]}")
+    sudo docker run --rm --network host \
+        --name monitor_all_${profile}_$(date +%s%N) \
+        -v /home/barunntc/snmp-app/logs:/app/logs \
+        ${dockername} "all" "$profile" "$types_csv" "$regions_csv" > "$logfile" 2>&1 &
+    exit 0
+fi
+
 # Run type–region jobs in parallel
 for type in "${types[@]}"; do
     for region in "${regions[@]}"; do
@@ -4,7 +4,6 @@ import org.snmp4j.*;
 import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.*;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
 
 import com.example.snmp.Dao;
 import com.example.snmp.NodeSerialOid;
@@ -39,6 +38,41 @@ public class App {
         // Initialize DAO to interact with database
         Dao dao = new Dao(mode);
         Parameter parameter = dao.getSnmpConfig(); // Retrieve SNMP configuration
+        BatchSizeController.preload(dao.getLearnedBatchSizes()); // Start from batch sizes learned per node
+
+        // "all [mode] [types] [regions]": every type x region unit in this JVM (replaces the container fan-out)
+        if (args.length >= 1 && args[0].equalsIgnoreCase("all")) {
+            String runMode = args.length >= 2 ? args[1] : mode;
+            Dao runDao = runMode.equals(mode) ? dao : new Dao(runMode);
+            Parameter runParameter = runDao.getSnmpConfig();
+            BatchSizeController.preload(runDao.getLearnedBatchSizes());
+            startSnmpEngine(runParameter);
+            new Orchestrator(runMode, runDao, runParameter).run(
+                    Orchestrator.parseTypes(args.length >= 3 ? args[2] : null),
+                    Orchestrator.parseRegions(args.length >= 4 ? args[3] : null));
+            DbWriter.shutdown();
+            AuditSink.shutdown();
+            SnmpEngine.shutdown();
+            DataSourceSingleton.shutdownAll();
+            System.exit(0);
+        }
+
+        // "daemon [mode] [types] [regions]": stay running and poll / discover on the configured intervals
+        if (args.length >= 1 && args[0].equalsIgnoreCase("daemon")) {
+            String runMode = args.length >= 2 ? args[1] : mode;
+            Dao runDao = runMode.equals(mode) ? dao : new Dao(runMode);
+            Parameter runParameter = runDao.getSnmpConfig();
+            BatchSizeController.preload(runDao.getLearnedBatchSizes());
+            startSnmpEngine(runParameter);
+            new PollingDaemon(runMode, runDao, runParameter,
+                    Orchestrator.parseTypes(args.length >= 3 ? args[2] : null),
+                    Orchestrator.parseRegions(args.length >= 4 ? args[3] : null)).run();
+            DbWriter.shutdown();
+            AuditSink.shutdown();
+            SnmpEngine.shutdown();
+            DataSourceSingleton.shutdownAll();
+            System.exit(0);
+        }
 
         // Parse command line arguments
         if (args.length >= 1) {
@@ -48,7 +82,10 @@ public class App {
                     logger.info("First argument is longer than 6 characters: {}", args[0]);        
                     Node node=dao.getNodeFromIpAndService(args[0], "ftth");  
                     NodeType nodeType=dao.getNodeTypeById(node.getType());          
+                    startSnmpEngine(parameter);
                     (new OnuSerialFillerApp()).sendSnmpWalkAllOnus(node,nodeType,dao);
+                    AuditSink.shutdown();
+                    SnmpEngine.shutdown();
                     DataSourceSingleton.shutdownAll();
                     System.exit(0);
                 }
@@ -63,6 +100,7 @@ public class App {
                 }
                 else if(nType == 1) {
                     // nType = 1 triggers serial number scanning using OnuSerialFillerApp
+                    startSnmpEngine(parameter);
                     (new OnuSerialFillerApp()).callableMain(mode);
                 }
             } catch (Error e) {
@@ -83,34 +121,38 @@ public class App {
 
         
 
-        // Create a fixed thread pool for processing nodes
-        ExecutorService executor = Executors.newFixedThreadPool(parameter.getThreadPool());
+        // Node fan-out: fixed pool, or virtual threads limited to threadPool nodes at a time
+        FanOutExecutor executor = FanOutExecutor.create("poll", parameter.getThreadPool(), parameter.isVirtualThreads());
 
         List<Future<?>> futures = new ArrayList<>();
 
+        // Nodes and plans come from the local snapshot when it is current; otherwise the plans of
+        // all nodes stream in with one query and each poll waits only for its own node's rows
+        PlanPrefetcher plans = PlanPrefetcher.load(dao, parameter, mode, nType, region);
+
         // Retrieve all nodes filtered by node type and region
-        List<Node> nodes = dao.getNodes(nType, region);
+        List<Node> nodes = plans.getNodes();
         logInfo("Node Size:" + nodes.size());
 
-        // Loop through each node and submit SNMP tasks to thread pool
-        for (Node node : nodes) {
-            // Check if node is reachable using ping
-            if (!isReachable(node, dao)) {
-                System.out.println("❌ " + node.getIp() + " is not reachable (ping failed)");
-                logger.error(node.getIp() + " is not reachable (ping failed)");
-                continue;
-            }
-
-            // Retrieve SNMP OIDs for the node
-            List<NodeSerialOid> nodeSerialOids = dao.getNodeSerialsOid(node.getId());
+        // NodeType selects the poll strategy and the metric columns for BULK polling
+        NodeType nodeType = plans.getNodeType();
 
-            // Submit SNMP GET task to executor
-            Future<?> future = executor.submit(() -> {
-                try {
-                    sendSnmpGet(node, community, nodeSerialOids, dao, parameter);
-                } catch (IOException e) {
-                    System.out.println("❌ Error querying " + node.getIp() + ": " + e.getMessage());
+        // Probe all nodes concurrently; each node's poll starts as soon as its own probe answers
+        ReachabilityProber prober = ReachabilityProber.getInstance(parameter);
+        for (Node node : nodes) {
+            CompletableFuture<Void> future = prober.probe(node, dao).thenCompose(reachable -> {
+                if (!reachable) {
+                    System.out.println("❌ " + node.getIp() + " is not reachable (probe failed)");
+                    return CompletableFuture.completedFuture(null);
                 }
+                // Run the SNMP GET task on the executor once the node's plan has arrived
+                return plans.planOf(node).thenCompose(plan -> executor.runAsync(() -> {
+                    try {
+                        sendSnmpGet(node, nodeType, community, plan, dao, parameter);
+                    } catch (IOException e) {
+                        System.out.println("❌ Error querying " + node.getIp() + ": " + e.getMessage());
+                    }
+                }));
             });
             futures.add(future);
         }
@@ -124,6 +166,9 @@ public class App {
             }
         }
 
+        // Results still queued in the writer stage count towards the run
+        DbWriter.flushIfStarted();
+
         // Calculate total runtime
         long programEnd = System.currentTimeMillis();
         long totalms = programEnd - programStart;
@@ -131,147 +176,111 @@ public class App {
         System.out.println("\n✅ Total time for all OLTs from main: " + totalMinutes + " minutes");
 
         executor.shutdown(); // Shutdown executor service
+        DbWriter.shutdown();   // Write results still queued
+        AuditSink.shutdown();  // Write pingstatus / oidnotfound events still buffered
+        SnmpEngine.shutdown(); // Close shared SNMP transports
         dao.close();         // Close DAO resources (DB connection)
     }
 
     /**
      * Sends SNMP GET requests for a batch of NodeSerialOids for a given node
      * @param node Node to query
+     * @param nodeType NodeType of the node (poll strategy, metric columns), may be null
      * @param community SNMP community string
      * @param nodeSerialOids List of OIDs to query
      * @param dao DAO instance to save data
      * @param parameter SNMP configuration (batch size, threads per node)
-     * @return List of NodeSerialOid with updated SNMP values
+     * @return Converted metrics of the node, indexed like nodeSerialOids
      * @throws IOException
      */
-    private static List<NodeSerialOid> sendSnmpGet(Node node, String community, List<NodeSerialOid> nodeSerialOids,
+    static OnuMetricBlock sendSnmpGet(Node node, NodeType nodeType, String community, List<NodeSerialOid> nodeSerialOids,
             Dao dao, Parameter parameter)
             throws IOException {
 
-        int totalOids = nodeSerialOids.size();
-        int batchSize = parameter.getBatchSize();  // Max number of OIDs per SNMP GET request
-
-        // Create a thread pool to process batches concurrently (max threads per node)
-        ExecutorService batchExecutor = Executors.newFixedThreadPool(parameter.getThreadPerNode());
-        List<Future<?>> batchFutures = new ArrayList<>();
-
-        // Initialize SNMP transport and session
-        TransportMapping<UdpAddress> transport = new DefaultUdpTransportMapping();
-        transport.listen();
-        Snmp snmp = new Snmp(transport);
+        // Shared engine: requests are queued per node and limited to threadPerNode in flight
+        SnmpEngine engine = SnmpEngine.start(parameter);
 
         // Prepare SNMP target
         CommunityTarget target = getCommunityTarget(node);
 
-        // Split OIDs into batches and submit tasks
-        for (int i = 0; i < totalOids; i += batchSize) {
-            final int start = i;
-            final int end = Math.min(i + batchSize, totalOids);
-            final List<NodeSerialOid> batch = nodeSerialOids.subList(start, end);
-
-            Future<?> future = batchExecutor.submit(() -> {
-                try {
-                    // Prepare PDUs for different OIDs (Rx power, distance, OLT power, temperature)
-                    PDU pduOnuRxPower = new PDU();
-                    PDU pduOnuDistance = new PDU();
-                    PDU pduOltRxPower = new PDU();
-                    PDU pduTemperature = new PDU();
-
-                    // Add OIDs to PDUs
-                    for (NodeSerialOid oid : batch) {
-                        pduOnuRxPower.add(new VariableBinding(new OID(oid.getOidOnuRxPower())));
-                        pduOnuDistance.add(new VariableBinding(new OID(oid.getOidDistance())));
-                        pduOltRxPower.add(new VariableBinding(new OID(oid.getOidOltRxPower())));
-                        if (node.getType() <= 10) {
-                            pduTemperature.add(new VariableBinding(new OID(oid.getOidTemperature())));
-                        }
-                    }
-
-                    // Send SNMP GET requests
-                    ResponseEvent response = snmp.get(pduOnuRxPower, target);
-                    ResponseEvent responseDistance = snmp.get(pduOnuDistance, target);
-                    ResponseEvent responseOltRxPower = snmp.get(pduOltRxPower, target);
-                    ResponseEvent responseTemperature = null;
-                    if (node.getType() <= 10) {
-                        responseTemperature = snmp.get(pduTemperature, target);
-                    }
-
-                    // Process SNMP responses
-                    if (response != null && response.getResponse() != null) {
-                        PDU responsePdu = response.getResponse();
-                        PDU responsePduDistance = responseDistance.getResponse();
-                        PDU responsePduOltRxpower = responseOltRxPower.getResponse();
-                        PDU responsePduTemperature = (node.getType() <= 10) ? responseTemperature.getResponse() : null;
-
-                        int localIndex = 0, m = 0;
-                        for (VariableBinding vb : responsePdu.getVariableBindings()) {
-                            float rxPower = 0;
-                            int distance = 0;
-                            float oltRxPower = 0;
-                            float temperature = 0;
-
-                            // Retrieve corresponding OIDs from other PDUs
-                            VariableBinding vbDistance = responsePduDistance.get(m);
-                            VariableBinding vbOltRxpower = responsePduOltRxpower.get(m);
-                            VariableBinding vbTemperature = (node.getType() <= 10) ? responsePduTemperature.get(m) : null;
-                            m++;
-
-                            try {
-                                float rawValue = Float.parseFloat(vb.getVariable().toString());
-                                distance = Integer.parseInt(vbDistance.getVariable().toString());
-                                float rawOltRxPowerValue = Float.parseFloat(vbOltRxpower.getVariable().toString());
-
-                                if (node.getType() > 10) {
-                                    // For non-ZTE devices
-                                    rxPower = (rawValue == 65535f) ? 0f : (rawValue * 0.002f - 30f);
-                                    oltRxPower = (rawOltRxPowerValue == -80000f) ? 0f : (rawOltRxPowerValue / 1000f);
-                                } else {
-                                    // For ZTE devices
-                                    float rawTemperature = Float.parseFloat(vbTemperature.getVariable().toString());
-                                    rxPower = (rawValue > 0) ? 0f : (rawValue / 100f);
-                                    oltRxPower = ((rawOltRxPowerValue / 100f) > 100f) ? 0f : (100f - rawOltRxPowerValue / 100f);
-                                    temperature = (rawTemperature > 100f) ? 0f : rawTemperature;
-                                }
-                            } catch (NumberFormatException e) {
-                                rxPower = 0f;  // Fallback if SNMP response is not a number
-                            }
-
-                            // Save SNMP values into the NodeSerialOid object
-                            batch.get(localIndex).setOnuRxPower(rxPower);
-                            batch.get(localIndex).setOnuDistance(distance);
-                            batch.get(localIndex).setOnuOltRxPower(oltRxPower);
-                            batch.get(localIndex).setOnuTemperature(temperature);
-
-                            localIndex++;
-                        }
-                    } else {
-                        logger.info("No SNMP response from " + node.getIp() + " for batch " + start + "-" + (end - 1));
-                    }
+        // A strategy set on the NodeType overrides the global one
+        PollStrategy strategy = (nodeType != null && nodeType.getPollStrategy() != null)
+                ? nodeType.getPollStrategy() : parameter.getPollStrategy();
+
+        // Adaptive batch size of this node, seeded from the size learned by earlier runs
+        BatchSizeController controller = BatchSizeController.forNode(node.getId(), parameter);
+
+        // Metric OIDs are built from the NodeType's columns and each ONU's index
+        OnuOidPlan oidPlan = new OnuOidPlan(nodeType);
+
+        // Vendor decoder chosen once for the node
+        OnuMetricDecoder decoder = OnuMetricDecoders.forNode(node, nodeType);
+
+        // Metrics are decoded into primitive arrays indexed by the ONU's slot in the plan
+        OnuMetricBlock results = new OnuMetricBlock(nodeSerialOids.size());
+
+        // This poll's requests; cancelling them leaves discovery and probes of the node alone
+        SnmpEngine.Operation operation = new SnmpEngine.Operation(node);
+
+        CompletableFuture<Void> poll;
+        switch (strategy) {
+            case BULK:
+                // GETBULK walk of each metric column, joined to the plan by OID index
+                poll = new BulkColumnPoller(engine, operation, nodeType, target, nodeSerialOids,
+                        parameter.getBulkMaxRepetitions(), decoder, results).poll();
+                break;
+            case COMBINED:
+                // One PDU per batch carrying every metric, split automatically on tooBig
+                poll = new CombinedGetPoller(engine, operation, target, nodeSerialOids, controller, oidPlan, decoder, results)
+                        .poll(parameter.getThreadPerNode());
+                break;
+            default:
+                poll = new SeparateGetPoller(engine, operation, target, nodeSerialOids, controller, oidPlan, decoder, results)
+                        .poll(parameter.getThreadPerNode());
+                break;
+        }
+        awaitPoll(poll, operation, engine, parameter);
 
-                } catch (Exception e) {
-                    logger.info("SNMP error on batch " + start + "-" + (end - 1) + ": " + e.getMessage());
-                }
-            });
+        // Keep what was learned about this OLT for the next run
+        if (strategy != PollStrategy.BULK) {
+            dao.saveLearnedBatchSize(node.getId(), controller.current());
+        }
 
-            batchFutures.add(future);
+        // Convert the whole block at once and hand it to the writer stage; polling goes on meanwhile.
+        // convert closes the block, so answers to requests still in flight after a cancelled poll are dropped
+        results.convert(decoder);
+        DbWriter.start(dao, parameter).submit(nodeSerialOids, results);
+        OnuHistoryStore history = OnuHistoryStore.start(parameter);
+        if (history != null) {
+            history.append(nodeSerialOids, results, System.currentTimeMillis());
         }
+        return results;
+    }
 
-        // Wait for all batch tasks to complete
-        for (Future<?> f : batchFutures) {
-            try {
-                f.get();
-            } catch (Exception e) {
-                e.printStackTrace();
+    /**
+     * Waits for a node's poll. On timeout (parameter.nodetimeoutsec), failure or interrupt the
+     * poll's queued requests are cancelled so its remaining batches stop right away. Requests
+     * already sent may still be answered later; OnuMetricBlock.convert makes sure they are ignored.
+     */
+    private static void awaitPoll(CompletableFuture<Void> poll, SnmpEngine.Operation operation, SnmpEngine engine,
+            Parameter parameter) {
+        Node node = operation.getNode();
+        try {
+            if (parameter.getNodeTimeoutSeconds() > 0) {
+                poll.get(parameter.getNodeTimeoutSeconds(), TimeUnit.SECONDS);
+            } else {
+                poll.get();
             }
+        } catch (TimeoutException e) {
+            engine.cancel(operation, "poll timed out after " + parameter.getNodeTimeoutSeconds() + " s");
+            logger.error(node.getIp() + " poll timed out, remaining batches cancelled");
+        } catch (ExecutionException e) {
+            engine.cancel(operation, "poll failed");
+            logger.info("SNMP error on poll of " + node.getIp() + ": " + e.getCause());
+        } catch (InterruptedException e) {
+            engine.cancel(operation, "poll interrupted");
+            Thread.currentThread().interrupt();
         }
-
-        batchExecutor.shutdown(); // Shutdown batch executor
-        snmp.close();             // Close SNMP session
-        transport.close();        // Close transport
-
-        // Save all retrieved SNMP data into database
-        dao.saveData(nodeSerialOids);
-        return nodeSerialOids;
     }
 
     /**
@@ -283,12 +292,23 @@ public class App {
         try {
             reachable = InetAddress.getByName(ip).isReachable(2000); // 2 seconds timeout
         } catch (Exception e) {
-            dao.updateReachable(node); // Mark node as unreachable in DB
             logInfo("Error:: " + ip + ":::" + e.toString());
         }
+        AuditSink.start(dao).reachability(node, reachable); // Unreachable / recovered nodes go to pingstatus
         return reachable;
     }
 
+    /**
+     * Starts the shared SNMP engine with the configured transports and per-node window
+     */
+    private static void startSnmpEngine(Parameter parameter) {
+        try {
+            SnmpEngine.start(parameter);
+        } catch (IOException e) {
+            logger.error("Unable to start SNMP engine: " + e.toString());
+        }
+    }
+
     /**
      * Builds SNMP CommunityTarget object for a node
      */
@@ -0,0 +1,202 @@
+package com.example.snmp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers pingstatus and oidnotfound events off the poll and discovery paths and writes them
+ * every parameter.auditflushsec seconds as multi-row inserts on one connection.
+ * Only state changes are recorded: a node that becomes unreachable (or reachable again after
+ * being recorded unreachable), and an OID of a node that was not already recorded missing.
+ * The known state is seeded from pingstatus and oidnotfound when the sink starts, so a new
+ * run does not record again what an earlier run already wrote. Events of a failed write are
+ * unmarked again, so they are recorded the next time they are seen.
+ */
+public class AuditSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditSink.class);
+
+    private static volatile AuditSink instance;
+
+    private final Dao dao;
+    private final ScheduledExecutorService flusher;
+    private final Queue<PingEvent> pings = new ConcurrentLinkedQueue<>();
+    private final Queue<OidEvent> missingOids = new ConcurrentLinkedQueue<>();
+    // Last known state per node; nodes never seen count as reachable
+    private final Map<Integer, Boolean> reachable = new ConcurrentHashMap<>();
+    private final Set<String> recordedOids = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Reachability change of a node (pingstatus row).
+     */
+    public static class PingEvent {
+        private final Node node;
+        private final boolean reachable;
+
+        PingEvent(Node node, boolean reachable) {
+            this.node = node;
+            this.reachable = reachable;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+        public boolean isReachable() {
+            return reachable;
+        }
+    }
+
+    /**
+     * OID found by a walk but missing in onuoid (oidnotfound row).
+     */
+    public static class OidEvent {
+        private final String oid;
+        private final Node node;
+
+        OidEvent(String oid, Node node) {
+            this.oid = oid;
+            this.node = node;
+        }
+
+        public String getOid() {
+            return oid;
+        }
+        public Node getNode() {
+            return node;
+        }
+    }
+
+    private AuditSink(Dao dao, Parameter parameter) {
+        this.dao = dao;
+        reachable.putAll(dao.getLastReachability());
+        for (Map.Entry<Integer, Set<String>> node : dao.getRecordedMissingOids().entrySet()) {
+            for (String oid : node.getValue()) {
+                recordedOids.add(oidKey(node.getKey(), oid));
+            }
+        }
+        logger.info("Audit state loaded: {} nodes in pingstatus, {} OIDs in oidnotfound",
+                reachable.size(), recordedOids.size());
+        long period = Math.max(1, parameter.getAuditFlushSeconds());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "audit-sink");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start the shared sink. Later calls return the running sink.
+     * @param dao DAO used for writing (its parameter row sets the flush interval)
+     * @return Shared AuditSink
+     */
+    public static AuditSink start(Dao dao) {
+        if (instance == null) {
+            synchronized (AuditSink.class) {
+                if (instance == null) {
+                    instance = new AuditSink(dao, dao.getSnmpConfig());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Write what is buffered and stop the flush thread.
+     */
+    public static void shutdown() {
+        AuditSink sink;
+        synchronized (AuditSink.class) {
+            sink = instance;
+            instance = null;
+        }
+        if (sink == null) return;
+        sink.flusher.shutdown();
+        sink.flush();
+    }
+
+    /**
+     * Write what is buffered now, if the sink is running.
+     */
+    public static void flushIfStarted() {
+        AuditSink sink = instance;
+        if (sink != null) sink.flush();
+    }
+
+    /**
+     * Record the outcome of a reachability check; only changes are written.
+     * @param node Checked node
+     * @param isReachable Outcome
+     */
+    public void reachability(Node node, boolean isReachable) {
+        Boolean previous = reachable.put(node.getId(), isReachable);
+        boolean wasReachable = previous == null || previous;
+        if (wasReachable != isReachable) {
+            pings.add(new PingEvent(node, isReachable));
+        }
+    }
+
+    /**
+     * Record an OID of a node that has no onuoid row; each OID is written once per node.
+     * @param oid Missing OID
+     * @param node Node it was found on
+     */
+    public void oidNotFound(String oid, Node node) {
+        if (recordedOids.add(oidKey(node.getId(), oid))) {
+            missingOids.add(new OidEvent(oid, node));
+        }
+    }
+
+    private synchronized void flush() {
+        List<PingEvent> pingBatch = drain(pings);
+        List<OidEvent> oidBatch = drain(missingOids);
+        if (pingBatch.isEmpty() && oidBatch.isEmpty()) return;
+        boolean saved;
+        try {
+            saved = dao.saveAuditEvents(pingBatch, oidBatch);
+        } catch (RuntimeException e) {
+            logger.error("Unable to write audit events: " + e.toString());
+            saved = false;
+        }
+        if (!saved) {
+            unmark(pingBatch, oidBatch);
+        }
+    }
+
+    // Forget events that were not written, so the next identical outcome records them again
+    private void unmark(List<PingEvent> pingBatch, List<OidEvent> oidBatch) {
+        for (PingEvent event : pingBatch) {
+            // Only if no later outcome changed the state meanwhile
+            reachable.replace(event.getNode().getId(), event.isReachable(), !event.isReachable());
+        }
+        for (OidEvent event : oidBatch) {
+            recordedOids.remove(oidKey(event.getNode().getId(), event.getOid()));
+        }
+        logger.info("{} pingstatus and {} oidnotfound events not written, recorded again when next seen",
+                pingBatch.size(), oidBatch.size());
+    }
+
+    private static String oidKey(int nodeId, String oid) {
+        return nodeId + ":" + oid;
+    }
+
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> batch = new ArrayList<>();
+        T event;
+        while ((event = queue.poll()) != null) {
+            batch.add(event);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.snmp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-node batch size (ONUs per GET) adjusted by additive increase / multiplicative decrease.
+ * A fast answer grows the batch by one, a slow answer shrinks it by a quarter, a timeout
+ * halves it, and tooBig halves it and caps it below the size that was refused.
+ * Learned sizes are loaded from and saved to the nodebatchsize table through Dao.
+ */
+public class BatchSizeController {
+
+    private static final Map<Integer, BatchSizeController> controllers = new ConcurrentHashMap<>();
+
+    // Sizes persisted by earlier runs, used as starting point for new controllers
+    private static final Map<Integer, Integer> learned = new ConcurrentHashMap<>();
+
+    private final int nodeId;
+    private final int minSize;
+    private final long targetLatencyMs;
+    private int maxSize;
+    private double size;
+
+    private BatchSizeController(int nodeId, int initialSize, int minSize, int maxSize, long targetLatencyMs) {
+        this.nodeId = nodeId;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.targetLatencyMs = targetLatencyMs;
+        this.size = clamp(initialSize);
+    }
+
+    /**
+     * Get the controller of a node, creating it from the learned or configured batch size.
+     * @param nodeId Node ID
+     * @param parameter SNMP configuration (batch size, bounds and latency target)
+     * @return BatchSizeController of the node
+     */
+    public static BatchSizeController forNode(int nodeId, Parameter parameter) {
+        return controllers.computeIfAbsent(nodeId, id -> {
+            Integer start = learned.get(id);
+            return new BatchSizeController(id, start != null ? start : parameter.getBatchSize(),
+                    parameter.getMinBatchSize(), parameter.getMaxBatchSize(), parameter.getTargetLatencyMs());
+        });
+    }
+
+    /**
+     * Seed starting sizes with values persisted by earlier runs.
+     * @param sizes Map of node ID to batch size
+     */
+    public static void preload(Map<Integer, Integer> sizes) {
+        learned.putAll(sizes);
+    }
+
+    /**
+     * Current batch sizes of every node seen in this process.
+     * @return Map of node ID to batch size
+     */
+    public static Map<Integer, Integer> snapshot() {
+        Map<Integer, Integer> sizes = new HashMap<>();
+        for (BatchSizeController controller : controllers.values()) {
+            sizes.put(controller.nodeId, controller.current());
+        }
+        return sizes;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Number of ONUs to put in the next request.
+     */
+    public synchronized int current() {
+        return (int) size;
+    }
+
+    /**
+     * A request was answered.
+     * @param latencyMs Time from sending to the response
+     */
+    public synchronized void onSuccess(long latencyMs) {
+        if (latencyMs <= targetLatencyMs) {
+            size = clamp(size + 1);
+        } else {
+            size = clamp(size * 0.75);
+        }
+    }
+
+    /**
+     * A request got no answer within the target's timeout and retries.
+     */
+    public synchronized void onTimeout() {
+        size = clamp(size / 2);
+    }
+
+    /**
+     * The OLT answered tooBig for a request of the given size.
+     * @param refusedSize Number of ONUs in the refused request
+     */
+    public synchronized void onTooBig(int refusedSize) {
+        maxSize = Math.max(minSize, Math.min(maxSize, refusedSize - 1));
+        size = clamp(Math.min(size, refusedSize / 2.0));
+    }
+
+    private double clamp(double value) {
+        return Math.max(minSize, Math.min(maxSize, value));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.snmp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Polls a node by walking the rx power, distance, OLT rx power and temperature columns with
+ * GETBULK instead of sending explicit GETs per ONU. The walks run side by side and every
+ * returned varbind is joined to its NodeSerialOid row by the OID index below the column.
+ */
+public class BulkColumnPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkColumnPoller.class);
+
+    private static final int RX = OnuOidPlan.RX;
+    private static final int DISTANCE = OnuOidPlan.DISTANCE;
+    private static final int OLT_RX = OnuOidPlan.OLT_RX;
+    private static final int TEMPERATURE = OnuOidPlan.TEMPERATURE;
+
+    private final SnmpEngine engine;
+    private final SnmpEngine.Operation operation;
+    private final Node node;
+    private final OnuOidPlan oidPlan;
+    private final CommunityTarget target;
+    private final List<NodeSerialOid> nodeSerialOids;
+    private final int maxRepetitions;
+    private final int metrics;
+    private final OnuMetricDecoder decoder;
+    private final OnuMetricBlock results;
+
+    /**
+     * @param engine Shared SNMP engine
+     * @param operation Poll of the node; cancelling it stops the remaining requests
+     * @param nodeType NodeType of the node; its column OIDs are used when they match the plan
+     * @param target SNMP target for the node
+     * @param nodeSerialOids ONUs to poll
+     * @param maxRepetitions GETBULK max-repetitions
+     * @param decoder Vendor decoder of the node
+     * @param results Receives the decoded metrics, indexed like nodeSerialOids
+     */
+    public BulkColumnPoller(SnmpEngine engine, SnmpEngine.Operation operation, NodeType nodeType, CommunityTarget target,
+            List<NodeSerialOid> nodeSerialOids, int maxRepetitions, OnuMetricDecoder decoder,
+            OnuMetricBlock results) {
+        this.engine = engine;
+        this.operation = operation;
+        this.node = operation.getNode();
+        this.oidPlan = new OnuOidPlan(nodeType);
+        this.target = target;
+        this.nodeSerialOids = nodeSerialOids;
+        this.maxRepetitions = maxRepetitions;
+        this.decoder = decoder;
+        this.results = results;
+        this.metrics = decoder.hasTemperature() ? 4 : 3;
+    }
+
+    /**
+     * Walk all metric columns and decode the joined rows.
+     * @return Future completed once every column walk has finished or failed
+     */
+    public CompletableFuture<Void> poll() {
+        if (nodeSerialOids.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Variable[][] values = new Variable[metrics][nodeSerialOids.size()];
+        CompletableFuture<?>[] walks = new CompletableFuture<?>[metrics];
+        long startTime = System.currentTimeMillis();
+
+        walks[RX] = walkColumn(RX, values[RX]);
+        walks[DISTANCE] = walkColumn(DISTANCE, values[DISTANCE]);
+        walks[OLT_RX] = walkColumn(OLT_RX, values[OLT_RX]);
+        if (metrics > TEMPERATURE) {
+            walks[TEMPERATURE] = walkColumn(TEMPERATURE, values[TEMPERATURE]);
+        }
+
+        return CompletableFuture.allOf(walks).handle((ignored, error) -> {
+            int requests = 0;
+            for (CompletableFuture<?> walk : walks) {
+                if (!walk.isCompletedExceptionally()) requests += (Integer) walk.join();
+            }
+            for (int i = 0; i < nodeSerialOids.size(); i++) {
+                decoder.decode(valueOrNull(values[RX][i]),
+                        valueOrNull(values[DISTANCE][i]),
+                        valueOrNull(values[OLT_RX][i]),
+                        metrics > TEMPERATURE ? valueOrNull(values[TEMPERATURE][i]) : null,
+                        results, i);
+            }
+            logger.info("Bulk poll of {}: {} ONUs in {} requests, {} ms", node.getIp(), nodeSerialOids.size(),
+                    requests, System.currentTimeMillis() - startTime);
+            return null;
+        });
+    }
+
+    // Walks one metric column and stores each value at the row its OID index belongs to
+    private CompletableFuture<Integer> walkColumn(int metric, Variable[] out) {
+
+        OID[] rowOids = new OID[nodeSerialOids.size()];
+        for (int i = 0; i < rowOids.length; i++) {
+            rowOids[i] = oidPlan.oid(metric, nodeSerialOids.get(i));
+        }
+
+        OID base = columnBase(oidPlan.column(metric), rowOids);
+        if (base == null) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        // Join key: the OID index below the column base
+        Map<OID, Integer> rowByIndex = new HashMap<>(rowOids.length * 2);
+        for (int i = 0; i < rowOids.length; i++) {
+            if (rowOids[i] != null) {
+                rowByIndex.put(indexOf(rowOids[i], base), i);
+            }
+        }
+
+        return engine.walk(operation, target, base, maxRepetitions, (VariableBinding vb) -> {
+            Integer row = rowByIndex.get(indexOf(vb.getOid(), base));
+            if (row != null) {
+                out[row] = vb.getVariable();
+            }
+        }).whenComplete((requests, error) -> {
+            if (error != null) {
+                logger.info("Bulk walk of column " + metric + " on " + node.getIp() + " stopped: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Column to walk: the NodeType's column OID when every row lies below it, otherwise the
+     * longest prefix shared by all row OIDs (always a proper prefix of each of them).
+     */
+    static OID columnBase(OID configured, OID[] rowOids) {
+        int[] prefix = null;
+        int prefixLength = 0;
+        boolean configuredMatches = configured != null;
+
+        for (OID oid : rowOids) {
+            if (oid == null) continue;
+            if (configuredMatches && (!oid.startsWith(configured) || oid.size() <= configured.size())) {
+                configuredMatches = false;
+            }
+            int[] value = oid.getValue();
+            if (prefix == null) {
+                prefix = value;
+                prefixLength = value.length - 1;
+                continue;
+            }
+            int n = Math.min(prefixLength, value.length - 1);
+            int k = 0;
+            while (k < n && prefix[k] == value[k]) k++;
+            prefixLength = k;
+        }
+
+        if (prefix == null) return null;
+        if (configuredMatches) return configured;
+        return prefixLength > 0 ? new OID(Arrays.copyOf(prefix, prefixLength)) : null;
+    }
+
+    private static OID indexOf(OID oid, OID base) {
+        int[] value = oid.getValue();
+        return new OID(Arrays.copyOfRange(value, base.size(), value.length));
+    }
+
+    // A row missing from the walk decodes like noSuchInstance, i.e. to zero
+    private static Variable valueOrNull(Variable variable) {
+        return variable != null ? variable : Null.noSuchInstance;
+    }
+}
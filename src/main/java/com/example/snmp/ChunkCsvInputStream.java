@@ -0,0 +1,71 @@
+package com.example.snmp;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Streams DbWriter chunks as "id,rxpower,distance,oltrxpower,temperature\n" lines for
+ * LOAD DATA LOCAL INFILE. Lines are produced one at a time while the driver reads, so no
+ * copy of the whole batch is built in memory.
+ */
+class ChunkCsvInputStream extends InputStream {
+
+    private final List<DbWriter.Chunk> chunks;
+    private int chunkIndex;
+    private int row;
+    private byte[] line = new byte[0];
+    private int linePos;
+    private int rows;
+
+    ChunkCsvInputStream(List<DbWriter.Chunk> chunks) {
+        this.chunks = chunks;
+        this.row = chunks.isEmpty() ? 0 : chunks.get(0).getFrom();
+    }
+
+    /**
+     * Number of lines produced so far.
+     */
+    int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int read() {
+        if (linePos >= line.length && !nextLine()) return -1;
+        return line[linePos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) return 0;
+        int n = 0;
+        while (n < len) {
+            if (linePos >= line.length && !nextLine()) break;
+            int count = Math.min(len - n, line.length - linePos);
+            System.arraycopy(line, linePos, b, off + n, count);
+            linePos += count;
+            n += count;
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    private boolean nextLine() {
+        while (chunkIndex < chunks.size()) {
+            DbWriter.Chunk chunk = chunks.get(chunkIndex);
+            if (row < chunk.getTo()) {
+                OnuMetricBlock results = chunk.getResults();
+                int i = chunk.slot(row++);
+                String text = chunk.getPlan().get(i).getSerialId() + "," + results.getRx(i) + ","
+                        + results.getDistance(i) + "," + results.getOltRx(i) + "," + results.getTemperature(i) + "\n";
+                line = text.getBytes(StandardCharsets.US_ASCII);
+                linePos = 0;
+                rows++;
+                return true;
+            }
+            chunkIndex++;
+            if (chunkIndex < chunks.size()) row = chunks.get(chunkIndex).getFrom();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.snmp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.PDU;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Polls a node with a single GET PDU per batch carrying every metric OID of its ONUs.
+ * Response varbinds are matched back to their ONU and metric by OID. When the OLT answers
+ * tooBig the request is halved and retried, and the node's BatchSizeController is capped
+ * below the refused size so later batches are packed to what the OLT can take. A single ONU
+ * whose metrics still do not fit is polled with one GET per metric, like SeparateGetPoller.
+ */
+public class CombinedGetPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(CombinedGetPoller.class);
+
+    private static final int RX = 0;
+    private static final int DISTANCE = 1;
+    private static final int OLT_RX = 2;
+    private static final int TEMPERATURE = 3;
+
+    private final SnmpEngine engine;
+    private final SnmpEngine.Operation operation;
+    private final Node node;
+    private final CommunityTarget target;
+    private final List<NodeSerialOid> nodeSerialOids;
+    private final BatchSizeController controller;
+    private final OnuOidPlan oidPlan;
+    private final OnuMetricDecoder decoder;
+    private final OnuMetricBlock results;
+    private final int metricsPerOnu;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    /**
+     * @param engine Shared SNMP engine
+     * @param operation Poll of the node; cancelling it stops the remaining requests
+     * @param target SNMP target for the node
+     * @param nodeSerialOids ONUs to poll
+     * @param controller Adaptive batch size (ONUs per PDU) of the node
+     * @param oidPlan Builds the metric OIDs of each ONU
+     * @param decoder Vendor decoder of the node
+     * @param results Receives the decoded metrics, indexed like nodeSerialOids
+     */
+    public CombinedGetPoller(SnmpEngine engine, SnmpEngine.Operation operation, CommunityTarget target,
+            List<NodeSerialOid> nodeSerialOids, BatchSizeController controller, OnuOidPlan oidPlan,
+            OnuMetricDecoder decoder, OnuMetricBlock results) {
+        this.engine = engine;
+        this.operation = operation;
+        this.node = operation.getNode();
+        this.target = target;
+        this.nodeSerialOids = nodeSerialOids;
+        this.controller = controller;
+        this.oidPlan = oidPlan;
+        this.decoder = decoder;
+        this.results = results;
+        this.metricsPerOnu = decoder.hasTemperature() ? 4 : 3;
+    }
+
+    /**
+     * Poll all ONUs of the node.
+     * @param lanes Number of batches kept outstanding at the same time
+     * @return Future completed when every ONU has been answered, timed out or failed
+     */
+    public CompletableFuture<Void> poll(int lanes) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.max(1, lanes)];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = nextBatch();
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    // Takes the next batch from the shared cursor and chains the following one on completion
+    private CompletableFuture<Void> nextBatch() {
+        int size = controller.current();
+        int start = cursor.getAndAdd(size);
+        if (start >= nodeSerialOids.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int end = Math.min(start + size, nodeSerialOids.size());
+        return request(start, end).thenCompose(v -> nextBatch());
+    }
+
+    private CompletableFuture<Void> request(int start, int end) {
+        PDU pdu = new PDU();
+        for (int i = start; i < end; i++) {
+            NodeSerialOid nso = nodeSerialOids.get(i);
+            pdu.add(new VariableBinding(oidPlan.oid(OnuOidPlan.RX, nso)));
+            pdu.add(new VariableBinding(oidPlan.oid(OnuOidPlan.DISTANCE, nso)));
+            pdu.add(new VariableBinding(oidPlan.oid(OnuOidPlan.OLT_RX, nso)));
+            if (metricsPerOnu > TEMPERATURE) {
+                pdu.add(new VariableBinding(oidPlan.oid(OnuOidPlan.TEMPERATURE, nso)));
+            }
+        }
+
+        return engine.send(operation, target, pdu).handle((event, error) -> {
+            if (error != null) {
+                logger.info("SNMP error on batch " + start + "-" + (end - 1) + ": " + error.getMessage());
+                // Node cancelled or transport failed: end this lane instead of sending more batches
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(error);
+                return failed;
+            }
+            PDU response = event.getResponse();
+            if (response == null) {
+                controller.onTimeout();
+                logger.info("No SNMP response from " + node.getIp() + " for batch " + start + "-" + (end - 1));
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (response.getErrorStatus() == PDU.tooBig && end - start > 1) {
+                int half = (end - start) / 2;
+                controller.onTooBig(end - start);
+                logger.info("tooBig from " + node.getIp() + " for " + (end - start) + " ONUs, retrying with " + half);
+                return CompletableFuture.allOf(request(start, start + half), request(start + half, end));
+            }
+            if (response.getErrorStatus() == PDU.tooBig) {
+                logger.info("tooBig from " + node.getIp() + " for the single ONU " + start
+                        + ", retrying with one GET per metric");
+                return requestPerMetric(pdu, start);
+            }
+            if (response.getErrorStatus() != PDU.noError) {
+                logger.info("SNMP error from " + node.getIp() + " for batch " + start + "-" + (end - 1) + ": "
+                        + response.getErrorStatusText());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            controller.onSuccess(SnmpEngine.latencyMillis(event));
+            try {
+                decode(pdu, response, start, end);
+            } catch (Exception e) {
+                logger.info("SNMP error on batch " + start + "-" + (end - 1) + ": " + e.getMessage());
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(f -> f);
+    }
+
+    // One GET per metric of a single ONU; the ONU is decoded only if every metric was answered
+    private CompletableFuture<Void> requestPerMetric(PDU request, int slot) {
+        List<CompletableFuture<ResponseEvent>> responses = new ArrayList<>(request.size());
+        for (int k = 0; k < request.size(); k++) {
+            PDU pdu = new PDU();
+            pdu.add(new VariableBinding(request.get(k).getOid()));
+            responses.add(engine.send(operation, target, pdu));
+        }
+
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).handle((ignored, error) -> {
+            if (error != null) {
+                logger.info("SNMP error on ONU " + slot + ": " + error.getMessage());
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(error);
+                return failed;
+            }
+            Variable[] values = new Variable[responses.size()];
+            for (int k = 0; k < values.length; k++) {
+                PDU response = responses.get(k).join().getResponse();
+                if (response == null) {
+                    logger.info("No SNMP response from " + node.getIp() + " for ONU " + slot);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                if (response.getErrorStatus() != PDU.noError || response.size() == 0) {
+                    logger.info("SNMP error from " + node.getIp() + " for ONU " + slot + ", "
+                            + request.get(k).getOid() + ": " + response.getErrorStatusText());
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                values[k] = response.get(0).getVariable();
+            }
+            try {
+                decodeOnu(values, 0, slot);
+            } catch (Exception e) {
+                logger.info("SNMP error on ONU " + slot + ": " + e.getMessage());
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(f -> f);
+    }
+
+    // Matches response varbinds to (ONU, metric) by OID and decodes each ONU
+    private void decode(PDU request, PDU response, int start, int end) {
+        Variable[] values = new Variable[request.size()];
+        Map<OID, Integer> positions = null;
+
+        for (int i = 0; i < response.size(); i++) {
+            VariableBinding vb = response.get(i);
+            int position = i;
+            // Agents answer in request order; only fall back to a lookup if one does not
+            if (i >= request.size() || !vb.getOid().equals(request.get(i).getOid())) {
+                if (positions == null) {
+                    positions = new HashMap<>();
+                    for (int k = 0; k < request.size(); k++) {
+                        positions.put(request.get(k).getOid(), k);
+                    }
+                }
+                Integer found = positions.get(vb.getOid());
+                if (found == null) continue;
+                position = found;
+            }
+            values[position] = vb.getVariable();
+        }
+
+        for (int i = start; i < end; i++) {
+            decodeOnu(values, (i - start) * metricsPerOnu, i);
+        }
+    }
+
+    // Decodes the metrics of one ONU starting at values[base]
+    private void decodeOnu(Variable[] values, int base, int slot) {
+        decoder.decode(valueOrNull(values[base + RX]),
+                valueOrNull(values[base + DISTANCE]),
+                valueOrNull(values[base + OLT_RX]),
+                metricsPerOnu > TEMPERATURE ? valueOrNull(values[base + TEMPERATURE]) : null,
+                results, slot);
+    }
+
+    // A missing varbind decodes like noSuchInstance, i.e. to zero
+    private static Variable valueOrNull(Variable variable) {
+        return variable != null ? variable : Null.noSuchInstance;
+    }
+}
@@ -2,6 +2,8 @@ package com.example.snmp;
 
 import java.sql.*;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
@@ -13,6 +15,8 @@ import org.slf4j.LoggerFactory;
 public class Dao {
 
     private final DataSource dataSource;
+    private final Supplier<DataSource> loadInfileDataSource;
+    private final ReferenceCache referenceCache;
     private static final Logger logger = LoggerFactory.getLogger(Dao.class);
 
     /**
@@ -21,6 +25,19 @@ public class Dao {
      */
     public Dao(String mode) {
         this.dataSource = DataSourceSingleton.getDataSource(mode);
+        this.loadInfileDataSource = () -> DataSourceSingleton.getLoadInfileDataSource(mode);
+        this.referenceCache = ReferenceCache.forMode(mode);
+    }
+
+    /**
+     * Constructor for callers that bring their own connections, e.g. the benchmarks module.
+     * @param mode Mode whose reference data cache is used
+     * @param dataSource DataSource to take connections from, also for saveDataLoadInfile
+     */
+    public Dao(String mode, DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.loadInfileDataSource = () -> dataSource;
+        this.referenceCache = ReferenceCache.forMode(mode);
     }
 
     /**
@@ -63,13 +80,17 @@ public class Dao {
     }
 
     /**
-     * Get a NodeType by its ID.
+     * Get a NodeType by its ID. Loaded once per mode (ReferenceCache).
      * @param id NodeType ID
      * @return NodeType object or null if not found
      */
     public NodeType getNodeTypeById(int id) {
+        return referenceCache.nodeType(id, this::loadNodeTypeById);
+    }
+
+    private NodeType loadNodeTypeById(int id) {
         NodeType nodeType = null;
-        String query = "SELECT name, vendor, onuserial, onudesc, lastondate, onudistance, onurxpower FROM nodetype WHERE id = ?";
+        String query = "SELECT * FROM nodetype WHERE id = ?";
         try (Connection conn = getDbConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
 
@@ -85,6 +106,23 @@ public class Dao {
                     nodeType.setOidOnuDistance(rs.getString("onudistance"));
                     nodeType.setOidOnuRxPower(rs.getString("onurxpower"));
 
+                    // Optional columns used by the BULK poll strategy
+                    Set<String> columns = columnNames(rs);
+                    nodeType.setOidOltRxPower(getOptionalString(rs, columns, "oltrxpower", null));
+                    nodeType.setOidOnuTemperature(getOptionalString(rs, columns, "onutemperature", null));
+                    nodeType.setPollStrategy(PollStrategy.fromString(getOptionalString(rs, columns, "pollstrategy", null), null));
+
+                    // Optional ONU index encoding for compact poll plans
+                    nodeType.setIndexEncoding(OnuIndexEncoding.fromString(
+                            getOptionalString(rs, columns, "indexencoding", null), nodeType.getIndexEncoding()));
+                    nodeType.setIndexBase(getOptionalLong(rs, columns, "indexbase", 0));
+                    nodeType.setCardStride(getOptionalLong(rs, columns, "cardstride", 0));
+                    nodeType.setPortStride(getOptionalLong(rs, columns, "portstride", 0));
+                    nodeType.setOnuStride(getOptionalLong(rs, columns, "onustride", 0));
+
+                    // Optional per-port change indicator for incremental discovery
+                    nodeType.setOidPortChange(getOptionalString(rs, columns, "portchangeoid", null));
+
                     String lastOnDateStr = rs.getString("lastondate");
                     nodeType.setOidOnuLastOnDateTime(
                         lastOnDateStr != null && !lastOnDateStr.isEmpty() ? lastOnDateStr : "0000-00-00 00:00:00"
@@ -232,6 +270,15 @@ public class Dao {
      * @return List of NodeSerialOid objects
      */
     public List<NodeSerialOid> getNodeSerialsOid(int nodeId) {
+        try {
+            return loadNodeSerialsOid(nodeId);
+        } catch (SQLException e) {
+            logger.error("Database error in getNodeSerialsOid: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private List<NodeSerialOid> loadNodeSerialsOid(int nodeId) throws SQLException {
         List<NodeSerialOid> nodeSerialOids = new ArrayList<>();
         String query = "CALL GetNodeSerials(?)";
 
@@ -242,97 +289,479 @@ public class Dao {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    NodeSerialOid nso = new NodeSerialOid();
-                    nso.setId(rs.getInt("id"));
-                    nso.setIp(rs.getString("ip"));
-                    nso.setName(rs.getString("name"));
-                    nso.setSerialId(rs.getInt("serial_id"));
-                    nso.setOnuid(rs.getInt("onuid"));
-                    nso.setSerial(rs.getString("serial"));
-                    nso.setOidDesc(rs.getString("oiddesc"));
-                    nso.setNodeType(rs.getInt("nodetype"));
-                    nso.setOidStatus(rs.getString("oidstatus"));
-                    nso.setOidOnuRxPower(rs.getString("oidonurxpower"));
-                    nso.setOidSerial(rs.getString("oidserial"));
-                    nso.setOidOltRxPower(rs.getString("oidoltrxpower"));
-                    nso.setOidTemperature(rs.getString("oidtemperature"));
-                    nso.setOidLineProfile(rs.getString("oidlineprofile"));
-                    nso.setOidDistance(rs.getString("oiddistance"));
-                    nodeSerialOids.add(nso);
+                    nodeSerialOids.add(nodeSerialOidRow(rs));
                 }
             }
-        } catch (SQLException e) {
-            logger.error("Database error in getNodeSerialsOid: " + e.getMessage());
         }
         return nodeSerialOids;
     }
 
+    // Full GetNodeSerials row, with every OID string
+    private static NodeSerialOid nodeSerialOidRow(ResultSet rs) throws SQLException {
+        NodeSerialOid nso = new NodeSerialOid();
+        nso.setId(rs.getInt("id"));
+        nso.setIp(rs.getString("ip"));
+        nso.setName(rs.getString("name"));
+        nso.setSerialId(rs.getInt("serial_id"));
+        nso.setOnuid(rs.getInt("onuid"));
+        nso.setSerial(rs.getString("serial"));
+        nso.setOidDesc(rs.getString("oiddesc"));
+        nso.setNodeType(rs.getInt("nodetype"));
+        nso.setOidStatus(rs.getString("oidstatus"));
+        nso.setOidOnuRxPower(rs.getString("oidonurxpower"));
+        nso.setOidSerial(rs.getString("oidserial"));
+        nso.setOidOltRxPower(rs.getString("oidoltrxpower"));
+        nso.setOidTemperature(rs.getString("oidtemperature"));
+        nso.setOidLineProfile(rs.getString("oidlineprofile"));
+        nso.setOidDistance(rs.getString("oiddistance"));
+        return nso;
+    }
+
+    /**
+     * Get the compact poll plan of a node: serial IDs plus the ONU index below the NodeType's
+     * metric columns, without the per-metric OID strings. The index is computed from card/port/onu
+     * (LINEAR encoding, when GetNodeSerials returns card and port) or parsed once from the stored
+     * OIDs here instead of on every poll. Rows whose OIDs do not share one index keep their strings.
+     * @param nodeId Node ID
+     * @param nodeType NodeType of the node (metric columns and index encoding)
+     * @return List of NodeSerialOid objects
+     */
+    public List<NodeSerialOid> getNodePlan(int nodeId, NodeType nodeType) {
+        try {
+            return loadNodePlan(nodeId, nodeType);
+        } catch (SQLException e) {
+            logger.error("Database error in getNodePlan: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Same as getNodePlan, but a database error is thrown instead of returning an empty plan,
+     * for callers that must not mistake a failed load for a node without ONUs.
+     * @param nodeId Node ID
+     * @param nodeType NodeType of the node
+     * @return List of NodeSerialOid objects
+     * @throws SQLException If the plan cannot be read
+     */
+    public List<NodeSerialOid> loadNodePlan(int nodeId, NodeType nodeType) throws SQLException {
+        OnuOidPlan oidPlan = new OnuOidPlan(nodeType);
+        if (!oidPlan.isCompact()) {
+            return loadNodeSerialsOid(nodeId);
+        }
+
+        List<NodeSerialOid> plan = new ArrayList<>();
+        String query = "CALL GetNodeSerials(?)";
+        int legacyRows = 0;
+
+        try (Connection conn = getDbConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            stmt.setInt(1, nodeId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<String> columns = columnNames(rs);
+                boolean linear = columns.contains("card") && columns.contains("port");
+                while (rs.next()) {
+                    NodeSerialOid nso = compactRow(rs, oidPlan, linear);
+                    if (nso.getOnuIndex() == null) legacyRows++;
+                    plan.add(nso);
+                }
+            }
+        }
+        if (legacyRows > 0) {
+            logger.info("Node {}: {} of {} ONUs keep OID strings (index not shared by all metrics)",
+                    nodeId, legacyRows, plan.size());
+        }
+        return plan;
+    }
+
+    // Compact GetNodeSerials row: the ONU index, or the metric OID strings if no shared index exists
+    private static NodeSerialOid compactRow(ResultSet rs, OnuOidPlan oidPlan, boolean linear) throws SQLException {
+        NodeSerialOid nso = new NodeSerialOid();
+        nso.setId(rs.getInt("id"));
+        nso.setSerialId(rs.getInt("serial_id"));
+        nso.setOnuid(rs.getInt("onuid"));
+        nso.setNodeType(rs.getInt("nodetype"));
+
+        int[] index = linear ? oidPlan.encode(rs.getInt("card"), rs.getInt("port"), nso.getOnuid()) : null;
+        if (index == null) {
+            index = sharedIndex(oidPlan, rs);
+        }
+        if (index != null) {
+            nso.setOnuIndex(index);
+            if (oidPlan.column(OnuOidPlan.TEMPERATURE) == null) {
+                nso.setOidTemperature(rs.getString("oidtemperature"));
+            }
+        } else {
+            nso.setOidOnuRxPower(rs.getString("oidonurxpower"));
+            nso.setOidOltRxPower(rs.getString("oidoltrxpower"));
+            nso.setOidTemperature(rs.getString("oidtemperature"));
+            nso.setOidDistance(rs.getString("oiddistance"));
+        }
+        return nso;
+    }
+
+    /**
+     * Stream the poll plans of many nodes with one call of GetNodeSerialsBulk(nodeIds), which returns
+     * the GetNodeSerials columns plus nodeid for a comma separated list of node IDs, ordered by nodeid.
+     * Rows are streamed from the server (no full result set in memory) and each node's plan is passed
+     * to the sink as soon as its last row has arrived, so polling starts while later nodes still load.
+     * @param nodes Nodes to load
+     * @param nodeType NodeType of the nodes (compact plan as in getNodePlan)
+     * @param sink Receives (node ID, plan) once per node found in the result
+     * @return true if the bulk call succeeded; false if it failed (e.g. the procedure does not exist),
+     *         in which case the nodes not yet passed to the sink must be loaded with getNodePlan
+     */
+    public boolean streamNodePlans(List<Node> nodes, NodeType nodeType, BiConsumer<Integer, List<NodeSerialOid>> sink) {
+        if (nodes.isEmpty()) return true;
+        OnuOidPlan oidPlan = new OnuOidPlan(nodeType);
+        StringBuilder nodeIds = new StringBuilder();
+        for (Node node : nodes) {
+            if (nodeIds.length() > 0) nodeIds.append(',');
+            nodeIds.append(node.getId());
+        }
+
+        String query = "CALL GetNodeSerialsBulk(?)";
+        long start = System.currentTimeMillis();
+        int rows = 0, delivered = 0;
+
+        try (Connection conn = getDbConnection();
+             PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setString(1, nodeIds.toString());
+            stmt.setFetchSize(Integer.MIN_VALUE);  // Connector/J: stream rows one by one
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<String> columns = columnNames(rs);
+                boolean linear = columns.contains("card") && columns.contains("port");
+                int currentNode = -1;
+                List<NodeSerialOid> plan = new ArrayList<>();
+                while (rs.next()) {
+                    int nodeId = rs.getInt("nodeid");
+                    if (nodeId != currentNode) {
+                        if (currentNode != -1) {
+                            sink.accept(currentNode, plan);
+                            delivered++;
+                        }
+                        currentNode = nodeId;
+                        plan = new ArrayList<>();
+                    }
+                    plan.add(oidPlan.isCompact() ? compactRow(rs, oidPlan, linear) : nodeSerialOidRow(rs));
+                    rows++;
+                }
+                if (currentNode != -1) {
+                    sink.accept(currentNode, plan);
+                    delivered++;
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Database error in streamNodePlans after " + delivered + " nodes: " + e.getMessage());
+            return false;
+        }
+        logger.info("Streamed plans of {} nodes ({} ONUs) in {} ms", delivered, rows, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Cheap fingerprint of the tables behind the poll plan (nodes, node types, ONU serials and OIDs).
+     * It changes when discovery adds, removes or moves ONUs, when an OID is edited in onuoid and
+     * when any nodetype column is edited, and is compared with the one stored in a PlanSnapshot
+     * to decide whether the snapshot can be used.
+     * @return Version string, or null if it cannot be read
+     */
+    public String getPlanVersion() {
+        String query = "SELECT CONCAT_WS(':',"
+                + " (SELECT COUNT(*) FROM node), (SELECT IFNULL(MAX(id), 0) FROM node),"
+                + " (SELECT IFNULL(MAX(`timestamp`), '') FROM node),"
+                + " (SELECT COUNT(*) FROM nodetype),"
+                + " (SELECT COUNT(*) FROM onuserial), (SELECT IFNULL(MAX(id), 0) FROM onuserial),"
+                + " (SELECT IFNULL(SUM(onuid), 0) FROM onuserial),"
+                + " (SELECT COUNT(*) FROM onuoid), (SELECT IFNULL(MAX(id), 0) FROM onuoid),"
+                + " (SELECT IFNULL(SUM(CRC32(CONCAT_WS('|', nodetype, oidserial))), 0) FROM onuoid))";
+        try (Connection conn = getDbConnection()) {
+            String version;
+            try (PreparedStatement stmt = conn.prepareStatement(query);
+                 ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+                version = rs.getString(1);
+            }
+            return version + ":" + nodeTypeChecksum(conn);
+        } catch (SQLException e) {
+            logger.error("Database error in getPlanVersion: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // CRC32 over every column of every nodetype row; the table is small and its optional columns vary
+    private static long nodeTypeChecksum(Connection conn) throws SQLException {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM nodetype ORDER BY id")) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int c = 1; c <= columns; c++) {
+                    String value = rs.getString(c);
+                    crc.update((value != null ? value : "\\N").getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                    crc.update('|');
+                }
+                crc.update('\n');
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Index of a GetNodeSerials row when its rx power, distance and OLT rx power OIDs all
+     * lie below their columns with the same index; temperature may be missing.
+     */
+    private static int[] sharedIndex(OnuOidPlan oidPlan, ResultSet rs) throws SQLException {
+        int[] index = oidPlan.indexOf(OnuOidPlan.RX, rs.getString("oidonurxpower"));
+        if (index == null
+                || !Arrays.equals(index, oidPlan.indexOf(OnuOidPlan.DISTANCE, rs.getString("oiddistance")))
+                || !Arrays.equals(index, oidPlan.indexOf(OnuOidPlan.OLT_RX, rs.getString("oidoltrxpower")))) {
+            return null;
+        }
+        String temperature = rs.getString("oidtemperature");
+        if (temperature != null && !temperature.isEmpty() && oidPlan.column(OnuOidPlan.TEMPERATURE) != null
+                && !Arrays.equals(index, oidPlan.indexOf(OnuOidPlan.TEMPERATURE, temperature))) {
+            return null;
+        }
+        return index;
+    }
+
     /**************************************************************
      * BULK INSERT / UPDATE SECTION
      **************************************************************/
 
     /**
-     * Save list of NodeSerialOid updates to onuserial table.
-     * @param nodeSerialOids List of NodeSerialOid objects containing data to save
+     * Save polled metrics to onuserial table as one JDBC batch.
+     * @param chunks Row ranges of one or more nodes' results (see DbWriter)
+     * @return true if the batch was written, false on a database error
      */
-    public void saveData(List<NodeSerialOid> nodeSerialOids) {
+    public boolean saveData(List<DbWriter.Chunk> chunks) {
         String sql = "UPDATE onuserial SET rxpower=?, distance=?, oltrxpower=?, temperature=? WHERE id=?";
+        int rows = 0;
         try (Connection conn = getDbConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            for (NodeSerialOid nso : nodeSerialOids) {
-                pstmt.setFloat(1, nso.getOnuRxPower());
-                pstmt.setFloat(2, nso.getOnuDistance());
-                pstmt.setFloat(3, nso.getOnuOltRxPower());
-                pstmt.setFloat(4, nso.getOnuTemperature());
-                pstmt.setInt(5, nso.getSerialId());
-                pstmt.addBatch();
+            for (DbWriter.Chunk chunk : chunks) {
+                List<NodeSerialOid> plan = chunk.getPlan();
+                OnuMetricBlock results = chunk.getResults();
+                for (int k = chunk.getFrom(); k < chunk.getTo(); k++) {
+                    int i = chunk.slot(k);
+                    pstmt.setFloat(1, results.getRx(i));
+                    pstmt.setFloat(2, results.getDistance(i));
+                    pstmt.setFloat(3, results.getOltRx(i));
+                    pstmt.setFloat(4, results.getTemperature(i));
+                    pstmt.setInt(5, plan.get(i).getSerialId());
+                    pstmt.addBatch();
+                    rows++;
+                }
             }
 
             pstmt.executeBatch();
-            logger.info(nodeSerialOids.size() + " rows updated successfully into `onuserial`.");
+            logger.info(rows + " rows updated successfully into `onuserial`.");
+            return true;
         } catch (SQLException e) {
             logger.error("Database error in saveData: " + e.toString());
+            return false;
         }
     }
 
     /**
-     * Insert a ping status entry for a node.
-     * @param node Node object
+     * Save polled metrics to onuserial by streaming them with LOAD DATA LOCAL INFILE into a
+     * temporary staging table and applying them with one UPDATE ... JOIN.
+     * Needs local_infile enabled on the server. Connections come from the separate pool that
+     * allows local infile (DataSourceSingleton.getLoadInfileDataSource), not from the general one.
+     * @param chunks Row ranges of one or more nodes' results (see DbWriter)
+     * @throws SQLException if the load or the update fails, so the caller can fall back to saveData
      */
-    public void updateReachable(Node node) {
-        String sql = "INSERT INTO pingstatus (nodeid,nodename,nodeip,isreachable) VALUES (?,?,?,?)";
+    public void saveDataLoadInfile(List<DbWriter.Chunk> chunks) throws SQLException {
+        String create = "CREATE TEMPORARY TABLE IF NOT EXISTS onuserial_stage ("
+                + "id INT NOT NULL PRIMARY KEY, rxpower FLOAT, distance FLOAT, oltrxpower FLOAT, temperature FLOAT"
+                + ") ENGINE=MEMORY";
+        String load = "LOAD DATA LOCAL INFILE 'onuserial_stage.csv' REPLACE INTO TABLE onuserial_stage "
+                + "FIELDS TERMINATED BY ',' LINES TERMINATED BY '\\n' "
+                + "(id, rxpower, distance, oltrxpower, temperature)";
+        String update = "UPDATE onuserial o JOIN onuserial_stage s ON o.id = s.id "
+                + "SET o.rxpower = s.rxpower, o.distance = s.distance, o.oltrxpower = s.oltrxpower, "
+                + "o.temperature = s.temperature";
+
+        try (Connection conn = loadInfileDataSource.get().getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.execute(create);
+            stmt.execute("TRUNCATE TABLE onuserial_stage");
+
+            ChunkCsvInputStream csv = new ChunkCsvInputStream(chunks);
+            stmt.unwrap(com.mysql.cj.jdbc.JdbcStatement.class).setLocalInfileInputStream(csv);
+            stmt.execute(load);
+
+            int updated = stmt.executeUpdate(update);
+            stmt.execute("TRUNCATE TABLE onuserial_stage");
+            logger.info(csv.getRows() + " rows loaded into `onuserial_stage`, " + updated + " rows changed in `onuserial`.");
+        }
+    }
+
+    /**
+     * Get the batch sizes learned for each node by earlier runs.
+     * @return Map of node ID to batch size (empty if nothing was saved yet)
+     */
+    public Map<Integer, Integer> getLearnedBatchSizes() {
+        Map<Integer, Integer> sizes = new HashMap<>();
+        String query = "SELECT nodeid, batchsize FROM nodebatchsize";
+        try (Connection conn = getDbConnection();
+             PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                sizes.put(rs.getInt("nodeid"), rs.getInt("batchsize"));
+            }
+        } catch (SQLException e) {
+            logger.error("Database error in getLearnedBatchSizes: " + e.getMessage());
+        }
+        return sizes;
+    }
+
+    /**
+     * Save the learned batch size of a node so the next run starts from it.
+     * @param nodeId Node ID
+     * @param batchSize Learned batch size
+     */
+    public void saveLearnedBatchSize(int nodeId, int batchSize) {
+        String sql = "INSERT INTO nodebatchsize (nodeid, batchsize) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE batchsize=VALUES(batchsize)";
         try (Connection conn = getDbConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, node.getId());
-            pstmt.setString(2, node.getName());
-            pstmt.setString(3, node.getIp());
-            pstmt.setInt(4, 0);
+            pstmt.setInt(1, nodeId);
+            pstmt.setInt(2, batchSize);
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            logger.error("Failed to update reachable: " + e.toString());
+            logger.error("Failed to save learned batch size: " + e.toString());
         }
     }
 
     /**
-     * Insert a record for OIDs not found in scanning.
+     * Record a node as unreachable in pingstatus. Buffered and written only if the node was
+     * not already recorded unreachable (see AuditSink).
+     * @param node Node object
+     */
+    public void updateReachable(Node node) {
+        AuditSink.start(this).reachability(node, false);
+    }
+
+    /**
+     * Record an OID not found in scanning. Buffered and written once per node and OID
+     * (see AuditSink), so no connection is taken inside the caller's loop.
      * @param oid OID string
      * @param node Node object
      */
     public void updateOidNotFound(String oid, Node node) {
-        String sql = "INSERT INTO oidnotfound (oid,nodename,nodeip,nodeid) VALUES (?,?,?,?)";
+        AuditSink.start(this).oidNotFound(oid, node);
+    }
+
+    /**
+     * Get the reachability last recorded in pingstatus for each node, so a new run only
+     * records changes against it (see AuditSink).
+     * @return Map of node ID to its last isreachable value (empty on a database error)
+     */
+    public Map<Integer, Boolean> getLastReachability() {
+        Map<Integer, Boolean> states = new HashMap<>();
+        String query = "SELECT p.nodeid, p.isreachable FROM pingstatus p "
+                + "JOIN (SELECT nodeid, MAX(id) AS id FROM pingstatus GROUP BY nodeid) latest ON p.id = latest.id";
         try (Connection conn = getDbConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
 
-            pstmt.setString(1, oid);
-            pstmt.setString(2, node.getName());
-            pstmt.setString(3, node.getIp());
-            pstmt.setInt(4, node.getId());
-            pstmt.executeUpdate();
+            while (rs.next()) {
+                states.put(rs.getInt("nodeid"), rs.getInt("isreachable") != 0);
+            }
+        } catch (SQLException e) {
+            logger.error("Database error in getLastReachability: " + e.getMessage());
+        }
+        return states;
+    }
+
+    /**
+     * Get the OIDs already recorded in oidnotfound, per node.
+     * @return Map of node ID to its recorded OIDs (empty on a database error)
+     */
+    public Map<Integer, Set<String>> getRecordedMissingOids() {
+        Map<Integer, Set<String>> oids = new HashMap<>();
+        String query = "SELECT DISTINCT nodeid, oid FROM oidnotfound";
+        try (Connection conn = getDbConnection();
+             PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                oids.computeIfAbsent(rs.getInt("nodeid"), id -> new HashSet<>()).add(rs.getString("oid"));
+            }
         } catch (SQLException e) {
-            logger.error("Failed to update OidNotFound: " + e.toString());
+            logger.error("Database error in getRecordedMissingOids: " + e.getMessage());
         }
+        return oids;
+    }
+
+    /**
+     * Write buffered audit events as multi-row inserts in one transaction.
+     * @param pings Reachability changes for pingstatus
+     * @param missingOids Missing OIDs for oidnotfound
+     * @return true if all events were written, false if none were (database error)
+     */
+    public boolean saveAuditEvents(List<AuditSink.PingEvent> pings, List<AuditSink.OidEvent> missingOids) {
+        final int rowsPerInsert = 500;
+        try (Connection conn = getDbConnection()) {
+            conn.setAutoCommit(false);
+            for (int from = 0; from < pings.size(); from += rowsPerInsert) {
+                List<AuditSink.PingEvent> part = pings.subList(from, Math.min(from + rowsPerInsert, pings.size()));
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        multiRowInsert("INSERT INTO pingstatus (nodeid,nodename,nodeip,isreachable) VALUES ", 4, part.size()))) {
+                    int p = 1;
+                    for (AuditSink.PingEvent event : part) {
+                        pstmt.setInt(p++, event.getNode().getId());
+                        pstmt.setString(p++, event.getNode().getName());
+                        pstmt.setString(p++, event.getNode().getIp());
+                        pstmt.setInt(p++, event.isReachable() ? 1 : 0);
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+            for (int from = 0; from < missingOids.size(); from += rowsPerInsert) {
+                List<AuditSink.OidEvent> part = missingOids.subList(from, Math.min(from + rowsPerInsert, missingOids.size()));
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        multiRowInsert("INSERT INTO oidnotfound (oid,nodename,nodeip,nodeid) VALUES ", 4, part.size()))) {
+                    int p = 1;
+                    for (AuditSink.OidEvent event : part) {
+                        pstmt.setString(p++, event.getOid());
+                        pstmt.setString(p++, event.getNode().getName());
+                        pstmt.setString(p++, event.getNode().getIp());
+                        pstmt.setInt(p++, event.getNode().getId());
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+            conn.commit();
+            logger.info("Audit events written: {} pingstatus, {} oidnotfound", pings.size(), missingOids.size());
+            return true;
+        } catch (SQLException e) {
+            logger.error("Failed to write audit events: " + e.toString());
+            return false;
+        }
+    }
+
+    private static String multiRowInsert(String insert, int columns, int rows) {
+        StringBuilder row = new StringBuilder("(");
+        for (int c = 0; c < columns; c++) {
+            row.append(c == 0 ? "?" : ",?");
+        }
+        row.append(')');
+        StringBuilder sql = new StringBuilder(insert);
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sql.append(',');
+            sql.append(row);
+        }
+        return sql.toString();
     }
 
     /**************************************************************
@@ -354,27 +783,138 @@ public class Dao {
     }
 
     /**
-     * Get SNMP configuration parameters.
+     * Get SNMP configuration parameters. Loaded once per mode (ReferenceCache).
      * @return Parameter object containing thread pool size, thread per node, and batch size
      */
     public Parameter getSnmpConfig() {
+        Parameter config = referenceCache.parameter(this::loadSnmpConfig);
+        return config != null ? config : new Parameter();
+    }
+
+    // Parameter row, or null on a database error so that it is not cached
+    private Parameter loadSnmpConfig() {
         Parameter config = new Parameter();
-        String query = "SELECT threadpool, threadpernode, batchsize FROM parameter ORDER BY id DESC LIMIT 1";
+        String query = "SELECT * FROM parameter ORDER BY id DESC LIMIT 1";
         try (Connection conn = getDbConnection();
              PreparedStatement stmt = conn.prepareStatement(query);
              ResultSet rs = stmt.executeQuery()) {
 
             if (rs.next()) {
+                Set<String> columns = columnNames(rs);
                 config.setThreadPool(rs.getInt("threadpool"));
                 config.setThreadPerNode(rs.getInt("threadpernode"));
                 config.setBatchSize(rs.getInt("batchsize"));
+
+                // Optional tuning columns; older schemas keep the defaults
+                config.setSnmpTransports(getOptionalInt(rs, columns, "snmptransports", config.getSnmpTransports()));
+                config.setSnmpWorkerThreads(getOptionalInt(rs, columns, "snmpworkerthreads", config.getSnmpWorkerThreads()));
+                config.setPollStrategy(PollStrategy.fromString(
+                        getOptionalString(rs, columns, "pollstrategy", null), config.getPollStrategy()));
+                config.setBulkMaxRepetitions(getOptionalInt(rs, columns, "bulkmaxrepetitions", config.getBulkMaxRepetitions()));
+                config.setMinBatchSize(getOptionalInt(rs, columns, "minbatchsize", config.getMinBatchSize()));
+                config.setMaxBatchSize(getOptionalInt(rs, columns, "maxbatchsize", config.getMaxBatchSize()));
+                config.setTargetLatencyMs(getOptionalInt(rs, columns, "targetlatencyms", (int) config.getTargetLatencyMs()));
+                config.setNodeRequestsPerSecond(getOptionalDouble(rs, columns, "noderequestspersec", config.getNodeRequestsPerSecond()));
+                config.setRegionConcurrency(getOptionalInt(rs, columns, "regionconcurrency", config.getRegionConcurrency()));
+                config.setGlobalConcurrency(getOptionalInt(rs, columns, "globalconcurrency", config.getGlobalConcurrency()));
+                config.setDiscoveryThreadPool(getOptionalInt(rs, columns, "discoverythreadpool", config.getDiscoveryThreadPool()));
+                config.setVirtualThreads(getOptionalInt(rs, columns, "virtualthreads", 0) == 1);
+                config.setNodeTimeoutSeconds(getOptionalInt(rs, columns, "nodetimeoutsec", config.getNodeTimeoutSeconds()));
+                config.setNodeMaxTimeouts(getOptionalInt(rs, columns, "nodemaxtimeouts", config.getNodeMaxTimeouts()));
+                config.setDbPoolSize(getOptionalInt(rs, columns, "dbpoolsize", config.getDbPoolSize()));
+                config.setPollIntervalSeconds(getOptionalInt(rs, columns, "pollintervalsec", config.getPollIntervalSeconds()));
+                config.setDiscoveryIntervalSeconds(getOptionalInt(rs, columns, "discoveryintervalsec", config.getDiscoveryIntervalSeconds()));
+                config.setScheduleJitterSeconds(getOptionalInt(rs, columns, "schedulejittersec", config.getScheduleJitterSeconds()));
+                config.setReachabilityProbe(ReachabilityProber.Method.fromString(
+                        getOptionalString(rs, columns, "reachabilityprobe", null), config.getReachabilityProbe()));
+                config.setReachabilityTimeoutMs(getOptionalInt(rs, columns, "reachabilitytimeoutms", config.getReachabilityTimeoutMs()));
+                config.setReachabilityTtlSeconds(getOptionalInt(rs, columns, "reachabilityttlsec", config.getReachabilityTtlSeconds()));
+                config.setReachabilityThreads(getOptionalInt(rs, columns, "reachabilitythreads", config.getReachabilityThreads()));
+                config.setWriterThreads(getOptionalInt(rs, columns, "writerthreads", config.getWriterThreads()));
+                config.setWriterBatchRows(getOptionalInt(rs, columns, "writerbatchrows", config.getWriterBatchRows()));
+                config.setWriterQueueCapacity(getOptionalInt(rs, columns, "writerqueuecapacity", config.getWriterQueueCapacity()));
+                config.setWriteStrategy(WriteStrategy.fromString(
+                        getOptionalString(rs, columns, "writestrategy", null), config.getWriteStrategy()));
+                config.setDeltaWrites(getOptionalInt(rs, columns, "deltawrites", 0) == 1);
+                config.setDeltaRxDb((float) getOptionalDouble(rs, columns, "deltarxdb", config.getDeltaRxDb()));
+                config.setDeltaOltRxDb((float) getOptionalDouble(rs, columns, "deltaoltrxdb", config.getDeltaOltRxDb()));
+                config.setDeltaDistanceM(getOptionalInt(rs, columns, "deltadistancem", config.getDeltaDistanceM()));
+                config.setDeltaTemperature((float) getOptionalDouble(rs, columns, "deltatemperature", config.getDeltaTemperature()));
+                config.setDeltaRefreshSeconds(getOptionalInt(rs, columns, "deltarefreshsec", config.getDeltaRefreshSeconds()));
+                config.setHistoryDir(getOptionalString(rs, columns, "historydir", config.getHistoryDir()));
+                config.setHistorySlotBytes(getOptionalInt(rs, columns, "historyslotbytes", config.getHistorySlotBytes()));
+                config.setHistoryRetentionDays(getOptionalInt(rs, columns, "historyretentiondays", config.getHistoryRetentionDays()));
+                config.setPlanSnapshotDir(getOptionalString(rs, columns, "plansnapshotdir", config.getPlanSnapshotDir()));
+                config.setPlanSnapshotMaxAgeSeconds(getOptionalInt(rs, columns, "plansnapshotmaxagesec", config.getPlanSnapshotMaxAgeSeconds()));
+                config.setAuditFlushSeconds(getOptionalInt(rs, columns, "auditflushsec", config.getAuditFlushSeconds()));
+                config.setDiscoveryChunkRows(getOptionalInt(rs, columns, "discoverychunkrows", config.getDiscoveryChunkRows()));
+                config.setDiscoveryWalkPartitions(getOptionalInt(rs, columns, "discoverywalkpartitions", config.getDiscoveryWalkPartitions()));
+                config.setDiscoveryIncremental(getOptionalInt(rs, columns, "discoveryincremental", 0) == 1);
+                config.setDiscoveryFullSyncSeconds(getOptionalInt(rs, columns, "discoveryfullsyncsec", config.getDiscoveryFullSyncSeconds()));
+                config.setDiscoveryStateDir(getOptionalString(rs, columns, "discoverystatedir", config.getDiscoveryStateDir()));
             }
         } catch (SQLException e) {
             logger.error("Database error in getSnmpConfig: " + e.getMessage());
+            return null;
         }
         return config;
     }
 
+    /**
+     * Lower-case column labels of a result set.
+     * @param rs ResultSet to inspect
+     * @return Set of column labels
+     * @throws SQLException if metadata cannot be read
+     */
+    private static Set<String> columnNames(ResultSet rs) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.add(meta.getColumnLabel(i).toLowerCase());
+        }
+        return columns;
+    }
+
+    /**
+     * Read an int column that may not exist in every schema version.
+     * @return Column value, or defaultValue if the column is missing or NULL
+     */
+    private static int getOptionalInt(ResultSet rs, Set<String> columns, String column, int defaultValue) throws SQLException {
+        if (!columns.contains(column)) return defaultValue;
+        int value = rs.getInt(column);
+        return rs.wasNull() ? defaultValue : value;
+    }
+
+    /**
+     * Read a long column that may not exist in every schema version.
+     * @return Column value, or defaultValue if the column is missing or NULL
+     */
+    private static long getOptionalLong(ResultSet rs, Set<String> columns, String column, long defaultValue) throws SQLException {
+        if (!columns.contains(column)) return defaultValue;
+        long value = rs.getLong(column);
+        return rs.wasNull() ? defaultValue : value;
+    }
+
+    /**
+     * Read a double column that may not exist in every schema version.
+     * @return Column value, or defaultValue if the column is missing or NULL
+     */
+    private static double getOptionalDouble(ResultSet rs, Set<String> columns, String column, double defaultValue) throws SQLException {
+        if (!columns.contains(column)) return defaultValue;
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? defaultValue : value;
+    }
+
+    /**
+     * Read a String column that may not exist in every schema version.
+     * @return Column value, or defaultValue if the column is missing or NULL
+     */
+    private static String getOptionalString(ResultSet rs, Set<String> columns, String column, String defaultValue) throws SQLException {
+        if (!columns.contains(column)) return defaultValue;
+        String value = rs.getString(column);
+        return value == null ? defaultValue : value;
+    }
+
     /**
      * Close the DataSource if it is HikariCP.
      */
@@ -398,29 +938,27 @@ public class Dao {
     public void updateOnuSerialRawBulk(List<OnuSerialWithOidClass> resultListOnuSerial,
                                        NodeType nodeType, Node node) throws SQLException {
 
-        String queryOnuOidMap = "SELECT id, oidserial FROM onuoid WHERE nodetype=?";
         String queryUpsert = "INSERT INTO onuserialraw (nodeid, onuid, serial, name,lastondate) " +
                              "VALUES (?, ?, ?, ?,?) " +
                              "ON DUPLICATE KEY UPDATE serial=VALUES(serial), name=VALUES(name), lastondate=VALUES(lastondate)";
 
+        // Shared per node type instead of reloaded for every node. Loaded before taking a
+        // connection, as a cache miss takes one of its own
+        OidSuffixIndex onuOidIndex = getOnuOidIndex(nodeType);
+        if (onuOidIndex == null) {
+            SQLException e = new SQLException("onuoid index of node type " + nodeType.getId() + " not available");
+            logger.error("Database error in updateOnuSerialRawBulk: {}", e.getMessage(), e);
+            throw e;
+        }
+
         try (Connection conn = getDbConnection()) {
             conn.setAutoCommit(false);
 
-            Map<String, Integer> onuOidMap = new HashMap<>();
-            try (PreparedStatement stmt = conn.prepareStatement(queryOnuOidMap)) {
-                stmt.setInt(1, nodeType.getId());
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        onuOidMap.put(rs.getString("oidserial"), rs.getInt("id"));
-                    }
-                }
-            }
-
             try (PreparedStatement stmtUpsert = conn.prepareStatement(queryUpsert)) {
                 int batchCount = 0;
                 for (OnuSerialWithOidClass onuSerialWithOidClass : resultListOnuSerial) {
-                    Integer onuOidId = onuOidMap.get(onuSerialWithOidClass.getOidOnuSerial());
-                    if (onuOidId == null) {
+                    int onuOidId = onuOidIndex.get(onuSerialWithOidClass.getOidOnuSerial());
+                    if (onuOidId < 0) {
                         updateOidNotFound(onuSerialWithOidClass.getOidOnuSerial(), node);
                         continue;
                     }
@@ -445,6 +983,80 @@ public class Dao {
         }
     }
 
+    /**************************************************************
+     * REFERENCE DATA SECTION
+     **************************************************************/
+
+    /**
+     * onuoid rows of a node type keyed by serial OID, loaded once per mode and node type.
+     * @param nodeType NodeType (its serial OID column keys the index)
+     * @return Index from serial OID to onuoid ID, or null on a database error
+     */
+    public OidSuffixIndex getOnuOidIndex(NodeType nodeType) {
+        return referenceCache.onuOidIndex(nodeType.getId(), id -> loadOnuOidIndex(nodeType));
+    }
+
+    /**
+     * Drop the cached onuoid index of a node type if onuoid changed since it was loaded.
+     * Costs one count query; called once per discovery run instead of reloading per node.
+     * @param nodeType NodeType to check
+     */
+    public void refreshOnuOidIndex(NodeType nodeType) {
+        OidSuffixIndex cached = referenceCache.cachedOnuOidIndex(nodeType.getId());
+        if (cached == null) return;
+        String version = onuOidVersion(nodeType.getId());
+        if (version == null || !version.equals(cached.getVersion())) {
+            logger.info("onuoid of node type {} changed, index reloaded on next use", nodeType.getId());
+            referenceCache.invalidateOnuOidIndex(nodeType.getId());
+        }
+    }
+
+    /**
+     * Drop all cached reference data of this mode, e.g. after a discovery cycle.
+     */
+    public void invalidateReferenceData() {
+        referenceCache.invalidateAll();
+    }
+
+    private OidSuffixIndex loadOnuOidIndex(NodeType nodeType) {
+        String version = onuOidVersion(nodeType.getId());
+        String query = "SELECT id, oidserial FROM onuoid WHERE nodetype=?";
+        long start = System.currentTimeMillis();
+        try (Connection conn = getDbConnection();
+             PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setInt(1, nodeType.getId());
+            OidSuffixIndex index = new OidSuffixIndex(nodeType.getOidOnuSerial(), 1 << 16);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    index.put(rs.getString("oidserial"), rs.getInt("id"));
+                }
+            }
+            index.setVersion(version);
+            logger.info("onuoid index of node type {}: {} OIDs in {} ms", nodeType.getId(), index.size(),
+                    System.currentTimeMillis() - start);
+            return index;
+        } catch (SQLException e) {
+            logger.error("Database error in loadOnuOidIndex: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String onuOidVersion(int nodeTypeId) {
+        String query = "SELECT CONCAT(COUNT(*), ':', IFNULL(MAX(id), 0), ':', IFNULL(SUM(CRC32(oidserial)), 0))"
+                + " FROM onuoid WHERE nodetype=?";
+        try (Connection conn = getDbConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, nodeTypeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            logger.error("Database error in onuOidVersion: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Sync data from onuserialraw table to onuserial table using stored procedure.
      */
@@ -9,6 +9,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class DataSourceSingleton {
     private static final Map<String, HikariDataSource> dataSourceMap = new ConcurrentHashMap<>();
+    private static final Map<String, HikariDataSource> loadInfileDataSourceMap = new ConcurrentHashMap<>();
 
     private DataSourceSingleton() {
         // prevent instantiation
@@ -25,6 +26,12 @@ public class DataSourceSingleton {
         }
     }
     dataSourceMap.clear();
+        for (HikariDataSource ds : loadInfileDataSourceMap.values()) {
+            if (!ds.isClosed()) {
+                ds.close();
+            }
+        }
+        loadInfileDataSourceMap.clear();
     }
 
     // Add this static block to your class
@@ -38,7 +45,59 @@ public class DataSourceSingleton {
         return dataSourceMap.computeIfAbsent(mode, DataSourceSingleton::createDataSource);
     }
 
+    /**
+     * Small separate pool whose connections allow LOAD DATA LOCAL INFILE, for Dao.saveDataLoadInfile.
+     * The driver announces local infile support only in the handshake, so it cannot be switched on
+     * for one statement of a general pool connection; the general pool keeps it off.
+     * @param mode DB mode
+     * @return DataSource of the mode's database with allowLoadLocalInfile set
+     */
+    public static DataSource getLoadInfileDataSource(String mode) {
+        return loadInfileDataSourceMap.computeIfAbsent(mode, DataSourceSingleton::createLoadInfileDataSource);
+    }
+
+    /**
+     * Resize the pool of a mode at runtime, e.g. once the configuration is known.
+     * Idle connections above the new maximum are closed by Hikari.
+     * @param mode DB mode
+     * @param maximumPoolSize New maximum number of connections
+     */
+    public static void resize(String mode, int maximumPoolSize) {
+        HikariDataSource ds = dataSourceMap.get(mode);
+        if (ds != null && !ds.isClosed()) {
+            ds.getHikariConfigMXBean().setMaximumPoolSize(maximumPoolSize);
+            ds.getHikariConfigMXBean().setMinimumIdle(Math.min(5, maximumPoolSize));
+        }
+    }
+
     private static HikariDataSource createDataSource(String mode) {
+        HikariConfig config = configOf(mode);
+        config.setMaximumPoolSize(100);
+        config.setMinimumIdle(5);
+
+        HikariDataSource ds = new HikariDataSource(config);
+
+        // // shutdown hook for each pool
+        // Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        //     System.out.println("Shutting down DB pool for mode: " + mode);
+        //     ds.close();
+        // }));
+
+        return ds;
+    }
+
+    private static HikariDataSource createLoadInfileDataSource(String mode) {
+        HikariConfig config = configOf(mode);
+        // One connection per DB writer thread is plenty; none are kept open while LOAD_DATA is unused
+        config.setPoolName("loadinfile-" + mode);
+        config.setMaximumPoolSize(8);
+        config.setMinimumIdle(0);
+        config.addDataSourceProperty("allowLoadLocalInfile", "true");
+        return new HikariDataSource(config);
+    }
+
+    // Connection settings of a mode shared by both pools
+    private static HikariConfig configOf(String mode) {
         HikariConfig config = new HikariConfig();
 
         switch (mode) {
@@ -67,21 +126,11 @@ public class DataSourceSingleton {
                 break;
         }
 
-        config.setMaximumPoolSize(100);
-        config.setMinimumIdle(5);
         config.setConnectionTimeout(30000);
         config.setIdleTimeout(600000);
         config.setMaxLifetime(1800000);
         config.setLeakDetectionThreshold(20000);
-
-        HikariDataSource ds = new HikariDataSource(config);
-
-        // // shutdown hook for each pool
-        // Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-        //     System.out.println("Shutting down DB pool for mode: " + mode);
-        //     ds.close();
-        // }));
-
-        return ds;
+        // allowLoadLocalInfile stays off here, see getLoadInfileDataSource
+        return config;
     }
 }
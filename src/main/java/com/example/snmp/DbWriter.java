@@ -0,0 +1,278 @@
+package com.example.snmp;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writer stage between the pollers and MySQL. A node's results are cut into chunks of at most
+ * parameter.writerbatchrows rows and put on a bounded queue; a small pool of writer threads
+ * takes chunks of any number of OLTs and saves them as one JDBC batch of about that size.
+ * When MySQL falls behind the queue fills up and submit blocks, which slows the pollers down
+ * instead of piling results up in memory.
+ * With parameter.writestrategy LOAD_DATA each batch is streamed into a staging table instead
+ * of being sent as UPDATE statements; rows per second of each strategy are logged per run.
+ * With parameter.deltawrites rows that did not change (see LastValueCache) are not queued at all.
+ */
+public class DbWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DbWriter.class);
+
+    private static volatile DbWriter instance;
+
+    private final Dao dao;
+    private final WriteStrategy strategy;
+    private final int batchRows;
+    private final BlockingQueue<Chunk> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private final AtomicLong pendingChunks = new AtomicLong();
+    private final LastValueCache lastValues;  // null unless parameter.deltawrites
+    // Rows, batches and write time per WriteStrategy since the last report
+    private final AtomicLongArray rowsWritten = new AtomicLongArray(WriteStrategy.values().length);
+    private final AtomicLongArray batchesWritten = new AtomicLongArray(WriteStrategy.values().length);
+    private final AtomicLongArray writeNanos = new AtomicLongArray(WriteStrategy.values().length);
+    private volatile boolean running = true;
+
+    /**
+     * Rows slots[from, to) of one node's poll plan and result block.
+     */
+    public static class Chunk {
+        private final List<NodeSerialOid> plan;
+        private final OnuMetricBlock results;
+        private final int[] slots;
+        private final int from;
+        private final int to;
+
+        Chunk(List<NodeSerialOid> plan, OnuMetricBlock results, int[] slots, int from, int to) {
+            this.plan = plan;
+            this.results = results;
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+        }
+
+        public List<NodeSerialOid> getPlan() {
+            return plan;
+        }
+        public OnuMetricBlock getResults() {
+            return results;
+        }
+        public int getFrom() {
+            return from;
+        }
+        public int getTo() {
+            return to;
+        }
+        /**
+         * Plan / result index of the k-th row, from &lt;= k &lt; to.
+         */
+        public int slot(int k) {
+            return slots[k];
+        }
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private DbWriter(Dao dao, Parameter parameter) {
+        this.dao = dao;
+        this.strategy = parameter.getWriteStrategy();
+        this.lastValues = parameter.isDeltaWrites() ? new LastValueCache(parameter) : null;
+        this.batchRows = Math.max(1, parameter.getWriterBatchRows());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, parameter.getWriterQueueCapacity()));
+        for (int i = 0; i < Math.max(1, parameter.getWriterThreads()); i++) {
+            Thread t = new Thread(this::writeLoop, "db-writer-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+            writers.add(t);
+        }
+        logger.info("DB writer started with {} threads, {} strategy, {} rows per batch, queue of {} chunks",
+                writers.size(), strategy, batchRows, queue.remainingCapacity());
+    }
+
+    /**
+     * Start the shared writer. Later calls return the running writer.
+     * @param dao DAO used for saving
+     * @param parameter Writer threads, batch rows and queue capacity
+     * @return Shared DbWriter
+     */
+    public static DbWriter start(Dao dao, Parameter parameter) {
+        if (instance == null) {
+            synchronized (DbWriter.class) {
+                if (instance == null) {
+                    instance = new DbWriter(dao, parameter);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Wait until everything submitted so far has been written and stop the writer threads.
+     */
+    public static void shutdown() {
+        DbWriter writer;
+        synchronized (DbWriter.class) {
+            writer = instance;
+            instance = null;
+        }
+        if (writer == null) return;
+        writer.flush();
+        writer.running = false;
+        for (Thread t : writer.writers) {
+            t.interrupt();
+        }
+        writer.logThroughput();
+    }
+
+    /**
+     * Wait until everything submitted so far has been written, if the writer is running.
+     */
+    public static void flushIfStarted() {
+        DbWriter writer = instance;
+        if (writer != null) {
+            writer.flush();
+            writer.logThroughput();
+        }
+    }
+
+    /**
+     * Log rows per second of each write strategy used since the last report, then reset.
+     * Time is summed over writer threads, so this is the rate of a single writer.
+     */
+    public void logThroughput() {
+        if (lastValues != null) {
+            long[] stats = lastValues.takeStats();
+            if (stats[0] > 0) {
+                logger.info("DB writer skipped {} of {} unchanged rows", stats[1], stats[0]);
+            }
+        }
+        for (WriteStrategy s : WriteStrategy.values()) {
+            long rows = rowsWritten.getAndSet(s.ordinal(), 0);
+            long batches = batchesWritten.getAndSet(s.ordinal(), 0);
+            long nanos = writeNanos.getAndSet(s.ordinal(), 0);
+            if (batches == 0) continue;
+            long rowsPerSecond = nanos > 0 ? rows * 1_000_000_000L / nanos : 0;
+            logger.info("DB writer {}: {} rows in {} batches, {} ms, {} rows/s",
+                    s, rows, batches, nanos / 1_000_000, rowsPerSecond);
+            System.out.println("ℹ️ DB writer " + s + ": " + rows + " rows, " + rowsPerSecond + " rows/s");
+        }
+    }
+
+    /**
+     * Queue a node's results for saving. Blocks while the queue is full.
+     * @param plan Poll plan of the node (serial IDs)
+     * @param results Converted metrics, indexed like plan
+     */
+    public void submit(List<NodeSerialOid> plan, OnuMetricBlock results) {
+        int[] slots;
+        if (lastValues != null) {
+            // Only rows that moved beyond the thresholds or are due for a refresh
+            slots = lastValues.changedSlots(plan, results);
+        } else {
+            slots = new int[plan.size()];
+            for (int i = 0; i < slots.length; i++) slots[i] = i;
+        }
+        for (int from = 0; from < slots.length; from += batchRows) {
+            Chunk chunk = new Chunk(plan, results, slots, from, Math.min(slots.length, from + batchRows));
+            pendingChunks.incrementAndGet();
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                // Do not lose results of an interrupted poller: write them on its own thread
+                Thread.currentThread().interrupt();
+                List<Chunk> single = new ArrayList<>();
+                single.add(chunk);
+                write(single);
+            }
+        }
+    }
+
+    /**
+     * Wait until every chunk submitted so far has been written.
+     */
+    public void flush() {
+        synchronized (pendingChunks) {
+            while (pendingChunks.get() > 0) {
+                try {
+                    pendingChunks.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Chunk> batch = new ArrayList<>();
+        while (running) {
+            try {
+                Chunk first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                int rows = first.size();
+                // Fill the JDBC batch with whatever other OLTs have finished meanwhile
+                while (rows < batchRows) {
+                    Chunk next = queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                    rows += next.size();
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!running) break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Chunk> batch) {
+        int rows = 0;
+        for (Chunk chunk : batch) rows += chunk.size();
+        try {
+            WriteStrategy used = WriteStrategy.BATCH;
+            long start = System.nanoTime();
+            boolean saved;
+            if (strategy == WriteStrategy.LOAD_DATA) {
+                try {
+                    dao.saveDataLoadInfile(batch);
+                    used = WriteStrategy.LOAD_DATA;
+                    saved = true;
+                } catch (SQLException e) {
+                    logger.error("LOAD DATA failed, saving batch with UPDATE statements: " + e.toString());
+                    start = System.nanoTime();
+                    saved = dao.saveData(batch);
+                }
+            } else {
+                saved = dao.saveData(batch);
+            }
+            if (!saved) {
+                // Values stay unknown to the cache, so the next poll writes these rows again
+                logger.error("DB writer dropped {} rows after a failed write", rows);
+                return;
+            }
+            if (lastValues != null) {
+                for (Chunk chunk : batch) lastValues.written(chunk);
+            }
+            writeNanos.addAndGet(used.ordinal(), System.nanoTime() - start);
+            rowsWritten.addAndGet(used.ordinal(), rows);
+            batchesWritten.incrementAndGet(used.ordinal());
+        } finally {
+            if (pendingChunks.addAndGet(-batch.size()) == 0) {
+                synchronized (pendingChunks) {
+                    pendingChunks.notifyAll();
+                }
+            }
+        }
+    }
+}
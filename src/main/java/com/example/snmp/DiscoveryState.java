@@ -0,0 +1,268 @@
+package com.example.snmp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * What incremental discovery (parameter.discoveryincremental) knows about one OLT: a
+ * fingerprint of each PON port and the time of the node's last full walk. A port is the first
+ * arc of the ONU index. Its fingerprint comes from a cheap change indicator, either the
+ * NodeType's per-port column (portchangeoid, e.g. the port's ONU count or a last-change
+ * counter) or, when the type has none, the last-online column summed up per port as ONU count
+ * plus a hash of the last-online values.
+ *
+ * Two limits follow from the indicator. Without portchangeoid, every incremental run still
+ * walks the whole last-online column to fingerprint the ports, and then walks the changed
+ * ports' last-online rows again with the other columns; the saving is the description and
+ * serial columns of the unchanged ports only. Descriptions are not fingerprinted either way,
+ * so renaming an ONU on an otherwise unchanged port reaches onuserialraw only with the next
+ * full walk (parameter.discoveryfullsyncsec).
+ *
+ * States are kept in memory and, when parameter.discoverystatedir is set, in one small file
+ * per node so that short-lived runs see the previous run's fingerprints.
+ */
+public class DiscoveryState {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiscoveryState.class);
+
+    private static final int MAGIC = 0x44495343;  // "DISC"
+    private static final int FORMAT = 1;
+
+    private static final Map<String, DiscoveryState> states = new ConcurrentHashMap<>();
+
+    private final long fullSyncMillis;
+    private final boolean portIndexed;
+    private final Map<Long, Long> ports;
+
+    /**
+     * @param fullSyncMillis Time of the last full walk of the node
+     * @param portIndexed Whether ONU indexes have a port arc above the ONU arc
+     * @param ports Fingerprint of every port
+     */
+    public DiscoveryState(long fullSyncMillis, boolean portIndexed, Map<Long, Long> ports) {
+        this.fullSyncMillis = fullSyncMillis;
+        this.portIndexed = portIndexed;
+        this.ports = Collections.unmodifiableMap(new HashMap<>(ports));
+    }
+
+    public long getFullSyncMillis() {
+        return fullSyncMillis;
+    }
+
+    public boolean isPortIndexed() {
+        return portIndexed;
+    }
+
+    public Map<Long, Long> getPorts() {
+        return ports;
+    }
+
+    /**
+     * @param now Current time in milliseconds
+     * @param fullSyncSeconds Full re-walk cycle (parameter.discoveryfullsyncsec)
+     * @return True if the node must be walked completely
+     */
+    public boolean isFullSyncDue(long now, int fullSyncSeconds) {
+        return !portIndexed || now - fullSyncMillis >= fullSyncSeconds * 1000L;
+    }
+
+    /**
+     * Ports whose fingerprint differs from the recorded one, including new ports. Ports that
+     * disappeared have no ONUs left to walk and are not returned.
+     * @param current Fingerprints read from the node now
+     * @return Changed ports in ascending order
+     */
+    public long[] changedPorts(Map<Long, Long> current) {
+        long[] changed = new long[current.size()];
+        int n = 0;
+        for (Map.Entry<Long, Long> entry : current.entrySet()) {
+            if (!entry.getValue().equals(ports.get(entry.getKey()))) {
+                changed[n++] = entry.getKey();
+            }
+        }
+        changed = Arrays.copyOf(changed, n);
+        Arrays.sort(changed);
+        return changed;
+    }
+
+    /**
+     * The same state with the fingerprints read after a successful partial walk.
+     * @param current Fingerprints of all ports
+     * @return New state keeping the full walk time
+     */
+    public DiscoveryState withPorts(Map<Long, Long> current) {
+        return new DiscoveryState(fullSyncMillis, portIndexed, current);
+    }
+
+    /**************************************************************
+     * STORE SECTION
+     **************************************************************/
+
+    /**
+     * State of a node, from memory or from parameter.discoverystatedir.
+     * @param parameter Configuration with the state directory
+     * @param node Node
+     * @return DiscoveryState, or null if the node has not been walked completely yet
+     */
+    public static DiscoveryState get(Parameter parameter, Node node) {
+        DiscoveryState state = states.get(key(node));
+        if (state != null) return state;
+        File file = fileOf(parameter, node);
+        if (file == null || !file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || in.readInt() != node.getId()) {
+                logger.info("Discovery state {} does not match node {}, ignoring", file, node.getIp());
+                return null;
+            }
+            long fullSyncMillis = in.readLong();
+            boolean portIndexed = in.readBoolean();
+            int count = in.readInt();
+            Map<Long, Long> ports = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                ports.put(in.readLong(), in.readLong());
+            }
+            state = new DiscoveryState(fullSyncMillis, portIndexed, ports);
+            states.put(key(node), state);
+            return state;
+        } catch (IOException e) {
+            logger.error("Unable to read discovery state " + file + ": " + e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Record the state of a node in memory and, if configured, on disk (temporary file, then rename).
+     * @param parameter Configuration with the state directory
+     * @param node Node
+     * @param state New state
+     */
+    public static void put(Parameter parameter, Node node, DiscoveryState state) {
+        states.put(key(node), state);
+        File file = fileOf(parameter, node);
+        if (file == null) return;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            logger.error("Discovery state directory {} cannot be created", dir);
+            return;
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(node.getId());
+                out.writeLong(state.fullSyncMillis);
+                out.writeBoolean(state.portIndexed);
+                out.writeInt(state.ports.size());
+                for (Map.Entry<Long, Long> entry : state.ports.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Unable to write discovery state " + file + ": " + e.toString());
+            tmp.delete();
+        }
+    }
+
+    private static String key(Node node) {
+        return node.getId() + "@" + node.getIp();
+    }
+
+    private static File fileOf(Parameter parameter, Node node) {
+        String dir = parameter.getDiscoveryStateDir();
+        if (dir == null || dir.trim().isEmpty()) return null;
+        return new File(dir.trim(), "discovery-" + node.getId() + ".state");
+    }
+
+    /**
+     * Sums up one column walk per port (first index arc). The fingerprint of a port does not
+     * depend on the order in which its rows arrive, so partitioned and concurrent walks give the
+     * same result.
+     */
+    public static class PortFingerprints {
+        private final OID root;
+        private final Map<Long, long[]> ports = new HashMap<>();  // port -> {rows, hash}
+        private boolean portIndexed = true;
+
+        /**
+         * @param root Column OID the walked bindings belong to
+         */
+        public PortFingerprints(OID root) {
+            this.root = root;
+        }
+
+        /**
+         * Add one binding of the column; bindings outside it are ignored.
+         * @param vb Walked binding
+         */
+        public synchronized void add(VariableBinding vb) {
+            OID oid = vb.getOid();
+            if (!oid.startsWith(root) || oid.size() == root.size()) return;
+            if (oid.size() - root.size() < 2) {
+                portIndexed = false;
+            }
+            long port = oid.getUnsigned(root.size());
+            String value = (vb.getVariable() != null && !(vb.getVariable() instanceof Null))
+                    ? vb.getVariable().toString() : "";
+            int suffixHash = new OID(oid.getValue(), root.size(), oid.size() - root.size()).hashCode();
+
+            long[] sum = ports.get(port);
+            if (sum == null) {
+                sum = new long[2];
+                ports.put(port, sum);
+            }
+            sum[0]++;
+            sum[1] += mix(((long) suffixHash << 32) ^ (value.hashCode() & 0xffffffffL));
+        }
+
+        /**
+         * @return False if some index had a single arc, i.e. there is no port level to walk separately
+         */
+        public synchronized boolean isPortIndexed() {
+            return portIndexed;
+        }
+
+        /**
+         * @return Fingerprint of every port seen
+         */
+        public synchronized Map<Long, Long> toMap() {
+            Map<Long, Long> result = new HashMap<>();
+            for (Map.Entry<Long, long[]> entry : ports.entrySet()) {
+                long[] sum = entry.getValue();
+                result.put(entry.getKey(), sum[0] * 0x9E3779B97F4A7C15L + sum[1]);
+            }
+            return result;
+        }
+
+        // 64-bit finalizer (MurmurHash3), so that summing row hashes does not cancel out
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
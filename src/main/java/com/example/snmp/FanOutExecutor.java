@@ -0,0 +1,118 @@
+package com.example.snmp;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor for node-level fan-out (OLT polls, discovery walks, node types).
+ * In platform mode it is a fixed pool of the given size. In virtual-thread mode every task
+ * gets its own virtual thread (Java 21+) and concurrency is limited by a semaphore instead
+ * of the pool size, so blocked tasks cost almost nothing.
+ */
+public class FanOutExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutExecutor.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    private FanOutExecutor(ExecutorService executor, int concurrency, boolean virtual) {
+        this.executor = executor;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.virtual = virtual;
+    }
+
+    /**
+     * Create an executor for fan-out work.
+     * @param name Thread name prefix (platform mode)
+     * @param concurrency Maximum number of tasks running at the same time
+     * @param virtualThreads Run tasks on virtual threads if the JVM supports them
+     * @return FanOutExecutor
+     */
+    public static FanOutExecutor create(String name, int concurrency, boolean virtualThreads) {
+        if (virtualThreads) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                return new FanOutExecutor(virtualExecutor, concurrency, true);
+            }
+            logger.warn("Virtual threads need Java 21+, running {} on platform threads", name);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency),
+                r -> new Thread(r, name + "-" + counter.incrementAndGet()));
+        return new FanOutExecutor(pool, concurrency, false);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up at runtime; the build targets Java 8
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Submit a task; it starts once one of the concurrency permits is free.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(() -> {
+            permits.acquire();
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Submit a task; it starts once one of the concurrency permits is free.
+     */
+    public Future<?> submit(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run a task once a permit is free and complete the returned future when it is done,
+     * so the task can be chained after another stage (e.g. a reachability probe).
+     */
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -7,6 +7,7 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.sql.Timestamp;
+import java.util.regex.Pattern;
 
 //for logging
 import org.slf4j.Logger;
@@ -15,21 +16,26 @@ import org.snmp4j.CommunityTarget;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
 
 public class HelperClass {
 
     // Global instance
     private static final Logger logger = LoggerFactory.getLogger(App.class);
 
+    // Text form of a date some OLTs return instead of a DateAndTime
+    private static final Pattern DATE_TEXT = Pattern.compile("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}");
+    private static final DateTimeFormatter DATE_TEXT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     public boolean isReachable(Node node, Dao dao) {
         boolean reachable = false;
         String ip = node.getIp();
         try {
             reachable = InetAddress.getByName(ip).isReachable(2000);
         } catch (Exception e) {
-            dao.updateReachable(node);
             logger.error("Error:: " + ip + ":::" + e.toString());
         }
+        AuditSink.start(dao).reachability(node, reachable);
         return reachable;
     }
 
@@ -95,6 +101,25 @@ public String macToCustomFormat(String mac) {
     return sb.toString().toUpperCase();
 }
 
+/**
+ * Same as macToCustomFormat(value.toString()), formatted from the raw bytes when SNMP4J would
+ * show them as hex.
+ * @param value Walked serial, may be null
+ * @param buffer Reused output buffer; a larger one is used if it is too small
+ * @return Serial such as HWTC1A2B3C4D
+ */
+public String macToCustomFormat(Variable value, char[] buffer) {
+    if (value instanceof OctetString && !((OctetString) value).isPrintable()) {
+        byte[] bytes = ((OctetString) value).getValue();
+        char[] out = buffer.length >= 2 * bytes.length ? buffer : new char[2 * bytes.length];
+        int length = OctetStringDecoder.formatSerial(bytes, out);
+        if (length >= 0) {
+            return new String(out, 0, length);
+        }
+    }
+    return macToCustomFormat(value != null ? value.toString() : "");
+}
+
 
 
 
@@ -102,8 +127,8 @@ public String macToCustomFormat(String mac) {
 public Timestamp parseSnmpDate(String input) {
     try {
         // Case 1: Already formatted string (yyyy-MM-dd HH:mm:ss)
-        if (input.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}")) {
-            LocalDateTime ldt = LocalDateTime.parse(input, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        if (DATE_TEXT.matcher(input).matches()) {
+            LocalDateTime ldt = LocalDateTime.parse(input, DATE_TEXT_FORMAT);
             return Timestamp.valueOf(ldt);
         }
 
@@ -151,6 +176,20 @@ public Timestamp parseSnmpDate(String input) {
     }
 }
 
+/**
+ * Same as parseSnmpDate(value.toString()), decoded from the raw bytes when SNMP4J would show
+ * them as hex.
+ * @param value Walked DateAndTime, may be null
+ * @return Timestamp, or null if the value is not a valid date
+ */
+public Timestamp parseSnmpDate(Variable value) {
+    if (value instanceof OctetString && !((OctetString) value).isPrintable()) {
+        long millis = OctetStringDecoder.dateAndTimeMillis(((OctetString) value).getValue());
+        return millis != OctetStringDecoder.NO_DATE ? new Timestamp(millis) : null;
+    }
+    return parseSnmpDate(value != null ? value.toString() : "");
+}
+
 // helper: hex -> byte[]
 private static byte[] hexToBytes(String hex) {
     int len = hex.length();
@@ -0,0 +1,33 @@
+package com.example.snmp;
+
+/**
+ * Huawei and other non-ZTE OLTs (node types above 10): rx power as (raw * 0.002 - 30) dBm
+ * with 65535 for no signal, OLT rx power in 0.001 dBm with -80000 for no signal, no temperature.
+ */
+public class HuaweiOnuDecoder implements OnuMetricDecoder {
+
+    @Override
+    public String vendor() {
+        return "huawei";
+    }
+
+    @Override
+    public boolean hasTemperature() {
+        return false;
+    }
+
+    @Override
+    public float rxPower(float raw) {
+        return (raw == 65535f) ? 0f : (raw * 0.002f - 30f);
+    }
+
+    @Override
+    public float oltRxPower(float raw) {
+        return (raw == -80000f) ? 0f : (raw / 1000f);
+    }
+
+    @Override
+    public float temperature(float raw) {
+        return 0f;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.snmp;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last metric values written per ONU (keyed by serial ID), used by DbWriter to skip rows that
+ * did not move by more than the configured thresholds (parameter.deltarxdb, deltaoltrxdb,
+ * deltadistancem, deltatemperature). A row is written anyway when it was last written more
+ * than parameter.deltarefreshsec seconds ago, so the row timestamp never gets older than that.
+ *
+ * Values are remembered by written() once DbWriter has saved a chunk, so rows of a failed
+ * write are still seen as changed by the next poll.
+ *
+ * Values are kept in pages of primitive arrays, so half a million ONUs cost a few MB and no
+ * object per ONU. Serial IDs are distinct within a poll, so different writers never touch the
+ * same slot at the same time.
+ */
+public class LastValueCache {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final float rxThreshold;
+    private final float oltRxThreshold;
+    private final int distanceThreshold;
+    private final float temperatureThreshold;
+    private final int refreshSeconds;
+    private final long epochMillis = System.currentTimeMillis();
+
+    private final Map<Integer, Page> pages = new ConcurrentHashMap<>();
+    private final AtomicLong rowsSeen = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+
+    private static class Page {
+        final float[] rx = new float[PAGE_SIZE];
+        final float[] oltRx = new float[PAGE_SIZE];
+        final int[] distance = new int[PAGE_SIZE];
+        final float[] temperature = new float[PAGE_SIZE];
+        final int[] writtenAt = new int[PAGE_SIZE]; // seconds since epochMillis + 1, 0 = never written
+    }
+
+    /**
+     * @param parameter Change thresholds and forced refresh interval
+     */
+    public LastValueCache(Parameter parameter) {
+        this.rxThreshold = parameter.getDeltaRxDb();
+        this.oltRxThreshold = parameter.getDeltaOltRxDb();
+        this.distanceThreshold = parameter.getDeltaDistanceM();
+        this.temperatureThreshold = parameter.getDeltaTemperature();
+        this.refreshSeconds = parameter.getDeltaRefreshSeconds();
+    }
+
+    /**
+     * Slots of a node's results that have to be written. Nothing is remembered until written().
+     * @param plan Poll plan of the node (serial IDs)
+     * @param results Converted metrics, indexed like plan
+     * @return Slot indices to write, in plan order
+     */
+    public int[] changedSlots(List<NodeSerialOid> plan, OnuMetricBlock results) {
+        int now = (int) ((System.currentTimeMillis() - epochMillis) / 1000) + 1;
+        int[] slots = new int[plan.size()];
+        int count = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (changed(plan.get(i).getSerialId(), results.getRx(i), results.getDistance(i),
+                    results.getOltRx(i), results.getTemperature(i), now)) {
+                slots[count++] = i;
+            }
+        }
+        rowsSeen.addAndGet(slots.length);
+        rowsSkipped.addAndGet(slots.length - count);
+        return count == slots.length ? slots : Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Remember the values of a chunk that has been saved.
+     * @param chunk Rows written to onuserial
+     */
+    public void written(DbWriter.Chunk chunk) {
+        int now = (int) ((System.currentTimeMillis() - epochMillis) / 1000) + 1;
+        List<NodeSerialOid> plan = chunk.getPlan();
+        OnuMetricBlock results = chunk.getResults();
+        for (int k = chunk.getFrom(); k < chunk.getTo(); k++) {
+            int i = chunk.slot(k);
+            int serialId = plan.get(i).getSerialId();
+            Page page = pages.computeIfAbsent(serialId >>> PAGE_BITS, key -> new Page());
+            int j = serialId & PAGE_MASK;
+            page.rx[j] = results.getRx(i);
+            page.oltRx[j] = results.getOltRx(i);
+            page.distance[j] = results.getDistance(i);
+            page.temperature[j] = results.getTemperature(i);
+            page.writtenAt[j] = now;
+        }
+    }
+
+    private boolean changed(int serialId, float rx, int distance, float oltRx, float temperature, int now) {
+        Page page = pages.get(serialId >>> PAGE_BITS);
+        if (page == null) return true;
+        int i = serialId & PAGE_MASK;
+        int writtenAt = page.writtenAt[i];
+        return writtenAt == 0 || now - writtenAt >= refreshSeconds
+                || Math.abs(rx - page.rx[i]) > rxThreshold
+                || Math.abs(oltRx - page.oltRx[i]) > oltRxThreshold
+                || Math.abs(distance - page.distance[i]) > distanceThreshold
+                || Math.abs(temperature - page.temperature[i]) > temperatureThreshold;
+    }
+
+    /**
+     * Rows checked and rows skipped since the last call, then reset.
+     * @return { seen, skipped }
+     */
+    public long[] takeStats() {
+        return new long[] { rowsSeen.getAndSet(0), rowsSkipped.getAndSet(0) };
+    }
+}
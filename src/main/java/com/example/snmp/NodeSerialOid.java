@@ -20,6 +20,7 @@ public class NodeSerialOid {
     private float onuOltRxPower;
     private float onuDistance;
     private float onuTemperature;
+    private int[] onuIndex; // OID index below the NodeType's metric columns; replaces the OID strings when set
     
 
 
@@ -205,6 +206,14 @@ public class NodeSerialOid {
   
 
 
+    public int[] getOnuIndex() {
+        return onuIndex;
+    }
+
+    public void setOnuIndex(int[] onuIndex) {
+        this.onuIndex = onuIndex;
+    }
+
     @Override
     public String toString() {
         return "NodeSerialOid [id=" + id + ", ip=" + ip + ", name=" + name + ", serialId=" + serialId + ", onuid="
@@ -11,6 +11,15 @@ public class NodeType {
     private String oidOnuLastOnDateTime;
     private String oidOnuDistance;
     private String oidOnuRxPower;
+    private String oidOltRxPower;
+    private String oidOnuTemperature;
+    private PollStrategy pollStrategy; // null means use Parameter default
+    private OnuIndexEncoding indexEncoding = OnuIndexEncoding.PARSED; // how an ONU's OID index is built
+    private long indexBase;   // LINEAR: index of card 0, port 0
+    private long cardStride;  // LINEAR: index step per card
+    private long portStride;  // LINEAR: index step per port
+    private long onuStride;   // LINEAR: index step per ONU, 0 = ONU id is a separate sub-identifier
+    private String oidPortChange; // per-port column that changes when the port's ONUs change, null = use last online
 
 
     public NodeType() {
@@ -96,4 +105,76 @@ public class NodeType {
         this.oidOnuRxPower = oidOnuRxPower;
     }
 
-}
\ No newline at end of file
+    public String getOidOltRxPower() {
+        return oidOltRxPower;
+    }
+
+    public void setOidOltRxPower(String oidOltRxPower) {
+        this.oidOltRxPower = oidOltRxPower;
+    }
+
+    public String getOidOnuTemperature() {
+        return oidOnuTemperature;
+    }
+
+    public void setOidOnuTemperature(String oidOnuTemperature) {
+        this.oidOnuTemperature = oidOnuTemperature;
+    }
+
+    public PollStrategy getPollStrategy() {
+        return pollStrategy;
+    }
+
+    public void setPollStrategy(PollStrategy pollStrategy) {
+        this.pollStrategy = pollStrategy;
+    }
+
+    public OnuIndexEncoding getIndexEncoding() {
+        return indexEncoding;
+    }
+
+    public void setIndexEncoding(OnuIndexEncoding indexEncoding) {
+        this.indexEncoding = indexEncoding;
+    }
+
+    public long getIndexBase() {
+        return indexBase;
+    }
+
+    public void setIndexBase(long indexBase) {
+        this.indexBase = indexBase;
+    }
+
+    public long getCardStride() {
+        return cardStride;
+    }
+
+    public void setCardStride(long cardStride) {
+        this.cardStride = cardStride;
+    }
+
+    public long getPortStride() {
+        return portStride;
+    }
+
+    public void setPortStride(long portStride) {
+        this.portStride = portStride;
+    }
+
+    public long getOnuStride() {
+        return onuStride;
+    }
+
+    public void setOnuStride(long onuStride) {
+        this.onuStride = onuStride;
+    }
+
+    public String getOidPortChange() {
+        return oidPortChange;
+    }
+
+    public void setOidPortChange(String oidPortChange) {
+        this.oidPortChange = oidPortChange;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.example.snmp;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Locale;
+
+/**
+ * Decoders for the raw bytes of binary OctetStrings (OctetString.getValue()), used by discovery
+ * instead of parsing the colon-hex text SNMP4J makes of them. They give the same results as
+ * HelperClass.parseSnmpDate and HelperClass.macToCustomFormat on that text, without regex,
+ * split or Integer.parseInt, and allocate nothing per call. Values SNMP4J shows as plain text
+ * (OctetString.isPrintable) are still handled by HelperClass.
+ */
+public final class OctetStringDecoder {
+
+    /** Returned by dateAndTimeMillis for values HelperClass.parseSnmpDate rejects (null). */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // Default zone at class load; local DateAndTime values are decoded without allocation when it has no DST
+    private static final ZoneRules LOCAL_RULES = ZoneId.systemDefault().getRules();
+    private static final boolean LOCAL_FIXED = LOCAL_RULES.isFixedOffset();
+    private static final int LOCAL_OFFSET_SECONDS = LOCAL_FIXED
+            ? LOCAL_RULES.getOffset(Instant.EPOCH).getTotalSeconds() : 0;
+
+    // String.toUpperCase only acts like ASCII upper-casing outside locales such as Turkish
+    private static final boolean ASCII_UPPER_CASE = "i".toUpperCase(Locale.getDefault()).equals("I");
+
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    private OctetStringDecoder() {
+    }
+
+    /**
+     * Decode a DateAndTime (RFC 2579): year (2 bytes), month, day, hour, minute, second,
+     * deci-seconds, then optionally direction ('+' / '-'), offset hours and minutes as sent by
+     * Huawei. Without the offset the time is local to the default zone (ZTE).
+     * @param value Raw bytes, at least 7
+     * @return Epoch milliseconds, or NO_DATE if the value is not a valid date
+     */
+    public static long dateAndTimeMillis(byte[] value) {
+        if (value == null || value.length < 7) return NO_DATE;
+        int year = (value[0] & 0xff) << 8 | (value[1] & 0xff);
+        int month = value[2] & 0xff;
+        int day = value[3] & 0xff;
+        int hour = value[4] & 0xff;
+        int minute = value[5] & 0xff;
+        int second = value[6] & 0xff;
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return NO_DATE;
+        }
+        long localSeconds = epochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second;
+
+        if (value.length >= 11) {
+            int offsetSeconds = ((value[9] & 0xff) * 60 + (value[10] & 0xff)) * 60;
+            if (offsetSeconds > MAX_OFFSET_SECONDS) return NO_DATE;
+            if (value[8] == '-') offsetSeconds = -offsetSeconds;
+            return (localSeconds - offsetSeconds) * 1000L;
+        }
+
+        // Timestamp.valueOf uses the Julian calendar before 1582 and the zone's DST rules; leave those to it
+        if (!LOCAL_FIXED || year < 1583) {
+            return Timestamp.valueOf(LocalDateTime.of(year, month, day, hour, minute, second)).getTime();
+        }
+        return (localSeconds - LOCAL_OFFSET_SECONDS) * 1000L;
+    }
+
+    /**
+     * Format a vendor ONU serial: the first 4 bytes are the ASCII vendor id, the rest is written
+     * as upper-case hex, e.g. 48 57 54 43 1a 2b 3c 4d gives HWTC1A2B3C4D.
+     * @param value Raw bytes
+     * @param out Buffer of at least 2 * value.length chars, reused between calls
+     * @return Number of chars written, or -1 if the vendor id is not plain ASCII (use HelperClass.macToCustomFormat)
+     */
+    public static int formatSerial(byte[] value, char[] out) {
+        if (!ASCII_UPPER_CASE) return -1;
+        int n = 0;
+        for (int i = 0; i < 4 && i < value.length; i++) {
+            int b = value[i] & 0xff;
+            if (b >= 0x80) return -1;
+            out[n++] = (char) (b >= 'a' && b <= 'z' ? b - ('a' - 'A') : b);
+        }
+        for (int i = 4; i < value.length; i++) {
+            int b = value[i] & 0xff;
+            out[n++] = HEX[b >>> 4];
+            out[n++] = HEX[b & 0x0f];
+        }
+        return n;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar, as LocalDate.toEpochDay
+    private static long epochDay(long year, int month, int day) {
+        long total = 365 * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!(year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.example.snmp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps ONU OIDs below one column (e.g. the NodeType's serial OID) to onuoid row IDs.
+ * The one- or two-arc suffix below the column is packed into a long and kept in a primitive
+ * open-addressing table, so no OID strings are stored or hashed per entry; OIDs with longer or
+ * larger suffixes, or not below the column, go to a small string map.
+ */
+public class OidSuffixIndex {
+
+    private static final long EMPTY = -1L;
+    private static final long TWO_ARCS = 1L << 62;
+    private static final long ARC_LIMIT = 1L << 31;
+
+    private final String prefix;  // column without leading dot, followed by '.'
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private final Map<String, Integer> others = new HashMap<>();
+    private String version;
+    private long[] boundaries;       // last partitionArcs result
+    private int boundaryPartitions;
+
+    /**
+     * @param column OID of the column the indexed OIDs lie below, may be null
+     * @param expectedSize Expected number of entries
+     */
+    public OidSuffixIndex(String column, int expectedSize) {
+        this.prefix = column != null && !column.isEmpty() ? stripDot(column) + "." : null;
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @param oid Full OID, with or without leading dot
+     * @param id onuoid row ID
+     */
+    public void put(String oid, int id) {
+        if (oid == null) return;
+        long key = key(oid);
+        if (key == EMPTY) {
+            others.put(stripDot(oid), id);
+            return;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = id;
+    }
+
+    /**
+     * @param oid Full OID, with or without leading dot
+     * @return onuoid row ID, or -1 if the OID is not indexed
+     */
+    public int get(String oid) {
+        if (oid == null) return -1;
+        long key = key(oid);
+        if (key == EMPTY) {
+            Integer id = others.get(stripDot(oid));
+            return id != null ? id : -1;
+        }
+        int slot = find(key);
+        return keys[slot] == EMPTY ? -1 : values[slot];
+    }
+
+    public int size() {
+        return size + others.size();
+    }
+
+    /**
+     * First suffix arcs (e.g. the card/PON port index) that cut the indexed OIDs into parts of
+     * about the same number of ONUs. Below a column, ranges (column, column.b1], (column.b1,
+     * column.b2], ..., (column.bn, end) then hold about the same number of rows each.
+     * @param partitions Number of parts wanted
+     * @return Boundaries, strictly increasing; empty if the index cannot be split
+     */
+    public synchronized long[] partitionArcs(int partitions) {
+        if (boundaries != null && boundaryPartitions == partitions) return boundaries;
+        long[] arcs = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key == EMPTY) continue;
+            arcs[n++] = (key & TWO_ARCS) != 0 ? (key & ~TWO_ARCS) >>> 31 : key;
+        }
+        Arrays.sort(arcs, 0, n);
+
+        long[] cut = new long[Math.max(0, partitions - 1)];
+        int count = 0;
+        for (int i = 1; i < partitions && n > 0; i++) {
+            long arc = arcs[(int) ((long) i * n / partitions)];
+            if (arc > arcs[0] && (count == 0 || arc > cut[count - 1])) {
+                cut[count++] = arc;
+            }
+        }
+        boundaries = Arrays.copyOf(cut, count);
+        boundaryPartitions = partitions;
+        return boundaries;
+    }
+
+    /**
+     * Version of the data the index was loaded from (see Dao.getOnuOidIndex).
+     */
+    public String getVersion() {
+        return version;
+    }
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    // Packed suffix below the column, or EMPTY if the OID does not fit the primitive table
+    private long key(String oid) {
+        if (prefix == null) return EMPTY;
+        int start = oid.startsWith(".") ? 1 : 0;
+        if (!oid.startsWith(prefix, start)) return EMPTY;
+
+        long[] arcs = new long[2];
+        int count = 0;
+        long arc = -1;
+        for (int i = start + prefix.length(); i < oid.length(); i++) {
+            char c = oid.charAt(i);
+            if (c == '.') {
+                if (arc < 0 || count == 2) return EMPTY;
+                arcs[count++] = arc;
+                arc = -1;
+            } else if (c >= '0' && c <= '9') {
+                arc = (arc < 0 ? 0 : arc * 10) + (c - '0');
+                if (arc >= ARC_LIMIT) return EMPTY;
+            } else {
+                return EMPTY;
+            }
+        }
+        if (arc < 0 || count == 2) return EMPTY;
+        arcs[count++] = arc;
+        return count == 1 ? arcs[0] : TWO_ARCS | (arcs[0] << 31) | arcs[1];
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static String stripDot(String oid) {
+        return oid.startsWith(".") ? oid.substring(1) : oid;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.snmp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Walks the description, last-online and serial columns of one OLT at the same time through
+ * the shared SnmpEngine, so the walks share the node's request window, rate limit and
+ * concurrency bulkheads with polling. Rows are joined by their OID suffix below each column, and a
+ * row is handed on as soon as all three columns have delivered it; complete rows go to the
+ * sink in chunks of chunkRows while the walks are still running. Only rows whose columns are
+ * out of step are held in memory, so memory no longer grows with the size of the OLT.
+ * Chunks are passed to the sink one after another on a separate thread, never on the SNMP
+ * dispatcher thread. When the sink falls behind, the walks send no further GETBULK step until
+ * fewer than MAX_WAITING_CHUNKS chunks are waiting, so slow upserts hold the walks back instead
+ * of piling up rows.
+ *
+ * On large OLTs startPartitioned cuts each column into index ranges (card / PON port prefixes
+ * taken from onuoid) that are walked side by side through the node's request window; their
+ * bindings all feed the same join, each range in walk order. startPorts walks only the given
+ * PON ports (first index arcs) of each column, for incremental discovery.
+ *
+ * Last-online bindings are also summed up per port (DiscoveryState.PortFingerprints), so a
+ * full walk leaves the fingerprints incremental discovery compares against next time.
+ */
+public class OnuDiscoveryWalk {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnuDiscoveryWalk.class);
+
+    private static final int DESCRIPTION = 0;
+    private static final int LAST_ONLINE = 1;
+    private static final int SERIAL = 2;
+    private static final int COLUMNS = 3;
+
+    // Chunks queued or being written per walk before the column walks are held back
+    private static final int MAX_WAITING_CHUNKS = 2;
+
+    // Stands for a missing or Null column value, decoded like the empty string
+    private static final Variable EMPTY = new OctetString();
+
+    private static final ExecutorService upserts = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "discovery-upsert");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Node node;
+    private final OID[] roots;
+    private final int chunkRows;
+    private final Consumer<List<OnuSerialWithOidClass>> sink;
+    private final HelperClass hc = new HelperClass();
+    private final CompletableFuture<Integer> done = new CompletableFuture<>();
+    private final DiscoveryState.PortFingerprints lastOnlinePorts;
+    private final SnmpEngine.Operation operation;  // all column walks, so timeouts end them together
+
+    // Guarded by this
+    private final Map<String, Variable[]> pending = new HashMap<>();
+    private final char[] serialBuffer = new char[64];
+    private List<OnuSerialWithOidClass> chunk = new ArrayList<>();
+    private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+    private int waitingChunks;
+    private final List<CompletableFuture<Void>> paused = new ArrayList<>();
+    private int walksLeft;
+    private boolean walkFailed;
+    private int rows;
+
+    /**
+     * @param node Node to walk
+     * @param nodeType NodeType with the description, last-online and serial column OIDs
+     * @param chunkRows Rows per chunk handed to the sink
+     * @param sink Receives complete rows, e.g. Dao.updateOnuSerialRawBulk
+     */
+    public OnuDiscoveryWalk(Node node, NodeType nodeType, int chunkRows, Consumer<List<OnuSerialWithOidClass>> sink) {
+        this.node = node;
+        this.operation = new SnmpEngine.Operation(node);
+        this.roots = new OID[COLUMNS];
+        this.roots[DESCRIPTION] = new OID(nodeType.getOidOnuDescription());
+        this.roots[LAST_ONLINE] = new OID(nodeType.getOidOnuLastOnDateTime());
+        this.roots[SERIAL] = new OID(nodeType.getOidOnuSerial());
+        this.lastOnlinePorts = new DiscoveryState.PortFingerprints(roots[LAST_ONLINE]);
+        this.chunkRows = Math.max(1, chunkRows);
+        this.sink = sink;
+    }
+
+    /**
+     * Start the three column walks, each walked completely.
+     * @param engine Shared SNMP engine
+     * @param target SNMP target of the node
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @return Future completed with the number of rows passed to the sink, after the last chunk was written
+     */
+    public CompletableFuture<Integer> start(SnmpEngine engine, CommunityTarget target, int maxRepetitions) {
+        return startPartitioned(engine, target, new long[0], maxRepetitions);
+    }
+
+    /**
+     * Start the column walks, each cut into ranges at the given first index arcs.
+     * @param engine Shared SNMP engine (the node's window bounds the ranges in flight)
+     * @param target SNMP target of the node
+     * @param boundaries First index arcs from OidSuffixIndex.partitionArcs, strictly increasing
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @return Future completed with the number of rows passed to the sink, after the last chunk was written
+     */
+    public CompletableFuture<Integer> startPartitioned(SnmpEngine engine, CommunityTarget target, long[] boundaries,
+            int maxRepetitions) {
+        int ranges = boundaries.length + 1;
+        synchronized (this) {
+            walksLeft = COLUMNS * ranges;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            OID root = roots[column];
+            OID from = root;
+            for (int r = 0; r < ranges; r++) {
+                OID to = r < boundaries.length ? new OID(root).append((int) boundaries[r]) : null;
+                int c = column;
+                engine.walkRange(operation, target, root, from, to, maxRepetitions, vb -> onBinding(c, vb),
+                        this::ready)
+                        .whenComplete((requests, error) -> {
+                            if (error != null) {
+                                onError(c, error.getMessage());
+                            }
+                            onWalkFinished();
+                        });
+                from = to;
+            }
+        }
+        if (ranges > 1) {
+            logger.info("Node {}: discovery walks cut into {} ranges per column", node.getIp(), ranges);
+        }
+        return done;
+    }
+
+    /**
+     * Start the column walks of the given ports only.
+     * @param engine Shared SNMP engine
+     * @param target SNMP target of the node
+     * @param ports First index arcs to walk
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @return Future completed with the number of rows passed to the sink, after the last chunk was written
+     */
+    public CompletableFuture<Integer> startPorts(SnmpEngine engine, CommunityTarget target, long[] ports,
+            int maxRepetitions) {
+        synchronized (this) {
+            walksLeft = COLUMNS * ports.length;
+        }
+        if (ports.length == 0) {
+            done.complete(0);
+            return done;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            for (long port : ports) {
+                int c = column;
+                OID root = new OID(roots[column]).append((int) port);
+                engine.walkRange(operation, target, root, root, null, maxRepetitions, vb -> onBinding(c, vb),
+                        this::ready)
+                        .whenComplete((requests, error) -> {
+                            if (error != null) {
+                                onError(c, error.getMessage());
+                            }
+                            onWalkFinished();
+                        });
+            }
+        }
+        return done;
+    }
+
+    /**
+     * @return Fingerprints of the ports seen in the last-online column; complete after a full walk
+     */
+    public DiscoveryState.PortFingerprints getLastOnlinePorts() {
+        return lastOnlinePorts;
+    }
+
+    /**
+     * @return True if some column walk ended with an error or timeout
+     */
+    public synchronized boolean isWalkFailed() {
+        return walkFailed;
+    }
+
+    private synchronized void onError(int column, String message) {
+        logger.info("SNMP error from " + node.getIp() + " walking " + roots[column] + ": " + message);
+        walkFailed = true;
+    }
+
+    private synchronized void onBinding(int column, VariableBinding vb) {
+        OID root = roots[column];
+        if (vb == null || !vb.getOid().startsWith(root) || vb.getOid().size() == root.size()) return;
+        String suffix = new OID(vb.getOid().getValue(), root.size(), vb.getOid().size() - root.size()).toString();
+        // Values are kept raw; serial and last online are decoded from their bytes in addRow
+        Variable value = (vb.getVariable() != null && !(vb.getVariable() instanceof Null))
+                ? vb.getVariable() : EMPTY;
+        if (column == LAST_ONLINE) {
+            lastOnlinePorts.add(vb);
+        }
+
+        Variable[] row = pending.get(suffix);
+        if (row == null) {
+            row = new Variable[COLUMNS];
+            pending.put(suffix, row);
+        }
+        row[column] = value;
+        if (row[DESCRIPTION] != null && row[LAST_ONLINE] != null && row[SERIAL] != null) {
+            pending.remove(suffix);
+            addRow(suffix, row);
+        }
+    }
+
+    private synchronized void onWalkFinished() {
+        if (--walksLeft > 0) return;
+
+        // Rows some column did not return: kept only if every walk completed, as the column is then really empty
+        if (!pending.isEmpty()) {
+            if (walkFailed) {
+                logger.info("Node {}: {} incomplete rows dropped after a failed walk", node.getIp(), pending.size());
+            } else {
+                for (Map.Entry<String, Variable[]> entry : pending.entrySet()) {
+                    addRow(entry.getKey(), entry.getValue());
+                }
+            }
+            pending.clear();
+        }
+        flushChunk();
+        int total = rows;
+        writes.whenComplete((v, error) -> done.complete(total));
+    }
+
+    private void addRow(String suffix, Variable[] row) {
+        OnuSerial onuSerial = new OnuSerial();
+        onuSerial.setName(row[DESCRIPTION] != null ? row[DESCRIPTION].toString() : "");
+        onuSerial.setSerial(hc.macToCustomFormat(row[SERIAL] != null ? row[SERIAL] : EMPTY, serialBuffer));
+        onuSerial.setOnuLastOnline(hc.parseSnmpDate(row[LAST_ONLINE] != null ? row[LAST_ONLINE] : EMPTY));
+
+        OnuSerialWithOidClass onuSerialWithOidClass = new OnuSerialWithOidClass();
+        onuSerialWithOidClass.setOnuSerial(onuSerial);
+        onuSerialWithOidClass.setOidOnuSerial(roots[SERIAL] + "." + suffix);
+        chunk.add(onuSerialWithOidClass);
+        rows++;
+        if (chunk.size() >= chunkRows) {
+            flushChunk();
+        }
+    }
+
+    // Queue the current chunk behind the previous ones, so a node's upserts never overlap
+    private void flushChunk() {
+        if (chunk.isEmpty()) return;
+        List<OnuSerialWithOidClass> full = chunk;
+        chunk = new ArrayList<>();
+        waitingChunks++;
+        writes = writes.thenRunAsync(() -> sink.accept(full), upserts).exceptionally(error -> {
+            logger.error("Upsert of " + full.size() + " rows of " + node.getIp() + " failed: " + error.toString());
+            return null;
+        }).thenRun(this::chunkWritten);
+    }
+
+    // Next walk step may go out at once, or once enough chunks have been written
+    private synchronized CompletableFuture<Void> ready() {
+        if (waitingChunks < MAX_WAITING_CHUNKS) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> resume = new CompletableFuture<>();
+        paused.add(resume);
+        return resume;
+    }
+
+    private void chunkWritten() {
+        List<CompletableFuture<Void>> resumed;
+        synchronized (this) {
+            if (--waitingChunks >= MAX_WAITING_CHUNKS || paused.isEmpty()) return;
+            resumed = new ArrayList<>(paused);
+            paused.clear();
+        }
+        // Outside the lock: completing sends the walks' next steps
+        resumed.forEach(resume -> resume.complete(null));
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.snmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded append-only history of polled ONU metrics on local disk (parameter.historydir).
+ *
+ * One segment file per UTC day and per 65536 serial IDs, memory-mapped, with a fixed slot of
+ * parameter.historyslotbytes bytes per ONU (the files are sparse, unused slots take no disk).
+ * A slot holds a small header and a Gorilla-style bit stream: timestamps as delta-of-delta,
+ * each metric as the XOR with its previous value, so an unchanged metric costs one bit.
+ * When a slot is full, further samples of that ONU for that day are dropped.
+ * Segments older than parameter.historyretentiondays are deleted when a new day starts.
+ */
+public class OnuHistoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnuHistoryStore.class);
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int METRICS = 4;  // rx, oltRx, distance, temperature
+
+    // Slot header layout
+    private static final int COUNT = 0;
+    private static final int BIT_POS = 4;
+    private static final int FIRST_TS = 8;      // seconds since the start of the segment's day
+    private static final int LAST_TS = 12;
+    private static final int LAST_DELTA = 16;
+    private static final int PREV_VALUE = 20;   // METRICS ints
+    private static final int PREV_LEAD = 36;    // METRICS bytes, leading zeros + 1 (0 = none yet)
+    private static final int PREV_TRAIL = 40;   // METRICS bytes
+    private static final int HEADER = 48;
+
+    private static volatile OnuHistoryStore instance;
+
+    private final File dir;
+    private final int slotBytes;
+    private final int retentionDays;
+    private final Map<String, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    private volatile long currentDay = -1;
+
+    /**
+     * One stored (or downsampled) sample of an ONU.
+     */
+    public static class Sample {
+        private final long timeMillis;
+        private final float rx;
+        private final float oltRx;
+        private final float distance;
+        private final float temperature;
+
+        public Sample(long timeMillis, float rx, float oltRx, float distance, float temperature) {
+            this.timeMillis = timeMillis;
+            this.rx = rx;
+            this.oltRx = oltRx;
+            this.distance = distance;
+            this.temperature = temperature;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+        public float getRx() {
+            return rx;
+        }
+        public float getOltRx() {
+            return oltRx;
+        }
+        public float getDistance() {
+            return distance;
+        }
+        public float getTemperature() {
+            return temperature;
+        }
+
+        @Override
+        public String toString() {
+            return new java.sql.Timestamp(timeMillis) + " rx=" + rx + " oltRx=" + oltRx
+                    + " distance=" + distance + " temperature=" + temperature;
+        }
+    }
+
+    private OnuHistoryStore(File dir, int slotBytes, int retentionDays) {
+        this.dir = dir;
+        this.slotBytes = Math.max(HEADER + 64, slotBytes);
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Open the shared store if parameter.historydir is set. Later calls return the open store.
+     * @param parameter History directory, slot size and retention
+     * @return OnuHistoryStore, or null if history is disabled or the directory is not usable
+     */
+    public static OnuHistoryStore start(Parameter parameter) {
+        if (instance == null && parameter.getHistoryDir() != null && !parameter.getHistoryDir().trim().isEmpty()) {
+            synchronized (OnuHistoryStore.class) {
+                if (instance == null) {
+                    File dir = new File(parameter.getHistoryDir().trim());
+                    if (!dir.isDirectory() && !dir.mkdirs()) {
+                        logger.error("History directory {} cannot be created, history disabled", dir);
+                        return null;
+                    }
+                    instance = new OnuHistoryStore(dir, parameter.getHistorySlotBytes(), parameter.getHistoryRetentionDays());
+                    logger.info("ONU history in {} ({} bytes per ONU and day, {} days kept)",
+                            dir, instance.slotBytes, instance.retentionDays);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**************************************************************
+     * WRITE SECTION
+     **************************************************************/
+
+    /**
+     * Append the decoded metrics of one poll. Slots that were not decoded are not stored.
+     * @param plan Poll plan of the node (serial IDs)
+     * @param results Converted metrics, indexed like plan
+     * @param timeMillis Poll time
+     */
+    public void append(List<NodeSerialOid> plan, OnuMetricBlock results, long timeMillis) {
+        long day = Math.floorDiv(timeMillis, DAY_MILLIS);
+        int second = (int) ((timeMillis - day * DAY_MILLIS) / 1000);
+        if (day != currentDay) {
+            rollDay(day);
+        }
+        int dropped = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            if (!results.isValid(i)) continue;
+            int serialId = plan.get(i).getSerialId();
+            MappedByteBuffer segment = segment(day, serialId >>> PAGE_BITS, true);
+            if (segment == null) return;
+            int base = (serialId & PAGE_MASK) * slotBytes;
+            if (!appendSample(segment, base, second, results.getRx(i), results.getOltRx(i),
+                    results.getDistance(i), results.getTemperature(i))) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            logger.info("History: {} samples dropped, slots full for today", dropped);
+        }
+    }
+
+    private boolean appendSample(MappedByteBuffer buf, int base, int second,
+            float rx, float oltRx, float distance, float temperature) {
+        int count = buf.getInt(base + COUNT);
+        BitWriter w = new BitWriter(buf, base + HEADER, (slotBytes - HEADER) * 8, buf.getInt(base + BIT_POS));
+        int lastDelta = 0;
+
+        if (count > 0) {
+            int lastTs = buf.getInt(base + LAST_TS);
+            int delta = second - lastTs;
+            if (delta <= 0) return true;  // same or older poll time, nothing to add
+            lastDelta = buf.getInt(base + LAST_DELTA);
+            writeDeltaOfDelta(w, delta - lastDelta);
+            lastDelta = delta;
+        }
+
+        int[] values = { Float.floatToIntBits(rx), Float.floatToIntBits(oltRx),
+                Float.floatToIntBits(distance), Float.floatToIntBits(temperature) };
+        int[] lead = new int[METRICS];
+        int[] trail = new int[METRICS];
+        for (int m = 0; m < METRICS; m++) {
+            lead[m] = buf.get(base + PREV_LEAD + m);
+            trail[m] = buf.get(base + PREV_TRAIL + m);
+            int prev = (count > 0) ? buf.getInt(base + PREV_VALUE + 4 * m) : 0;
+            writeXor(w, values[m] ^ prev, lead, trail, m);
+        }
+        if (w.overflow) return false;
+
+        // Commit: header last, so a reader never sees samples whose bits are incomplete
+        for (int m = 0; m < METRICS; m++) {
+            buf.putInt(base + PREV_VALUE + 4 * m, values[m]);
+            buf.put(base + PREV_LEAD + m, (byte) lead[m]);
+            buf.put(base + PREV_TRAIL + m, (byte) trail[m]);
+        }
+        if (count == 0) buf.putInt(base + FIRST_TS, second);
+        buf.putInt(base + LAST_TS, second);
+        buf.putInt(base + LAST_DELTA, lastDelta);
+        buf.putInt(base + BIT_POS, w.pos);
+        buf.putInt(base + COUNT, count + 1);
+        return true;
+    }
+
+    private static void writeDeltaOfDelta(BitWriter w, int dod) {
+        if (dod == 0) {
+            w.write(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            w.write(0b10, 2);
+            w.write(dod & 0x7F, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            w.write(0b110, 3);
+            w.write(dod & 0x1FF, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            w.write(0b1110, 4);
+            w.write(dod & 0xFFF, 12);
+        } else {
+            w.write(0b1111, 4);
+            w.write(dod & 0xFFFFFFFFL, 32);
+        }
+    }
+
+    // lead/trail hold the previous block as leading zeros + 1 (0 = none) and trailing zeros
+    private static void writeXor(BitWriter w, int xor, int[] lead, int[] trail, int m) {
+        if (xor == 0) {
+            w.write(0, 1);
+            return;
+        }
+        w.write(1, 1);
+        int l = Math.min(31, Integer.numberOfLeadingZeros(xor));
+        int t = Integer.numberOfTrailingZeros(xor);
+        if (lead[m] > 0 && l >= lead[m] - 1 && t >= trail[m]) {
+            int pl = lead[m] - 1;
+            w.write(0, 1);
+            w.write((xor >>> trail[m]) & mask(32 - pl - trail[m]), 32 - pl - trail[m]);
+        } else {
+            int length = 32 - l - t;
+            w.write(1, 1);
+            w.write(l, 5);
+            w.write(length - 1, 5);
+            w.write((xor >>> t) & mask(length), length);
+            lead[m] = l + 1;
+            trail[m] = t;
+        }
+    }
+
+    /**************************************************************
+     * QUERY SECTION
+     **************************************************************/
+
+    /**
+     * All stored samples of an ONU in a time range.
+     * @param serialId Serial ID of the ONU
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @return Samples in time order
+     */
+    public List<Sample> query(int serialId, long fromMillis, long toMillis) {
+        List<Sample> samples = new ArrayList<>();
+        for (long day = Math.floorDiv(fromMillis, DAY_MILLIS); day * DAY_MILLIS < toMillis; day++) {
+            MappedByteBuffer segment = segment(day, serialId >>> PAGE_BITS, false);
+            if (segment == null) continue;
+            readSlot(segment, (serialId & PAGE_MASK) * slotBytes, day * DAY_MILLIS, fromMillis, toMillis, samples);
+        }
+        return samples;
+    }
+
+    /**
+     * Samples of an ONU averaged per time bucket, e.g. hourly values for a week.
+     * @param serialId Serial ID of the ONU
+     * @param fromMillis Start of the range (inclusive)
+     * @param toMillis End of the range (exclusive)
+     * @param bucketMillis Bucket length
+     * @return One averaged sample per non-empty bucket, stamped with the bucket start
+     */
+    public List<Sample> downsample(int serialId, long fromMillis, long toMillis, long bucketMillis) {
+        List<Sample> result = new ArrayList<>();
+        long bucket = Long.MIN_VALUE;
+        int n = 0;
+        double rx = 0, oltRx = 0, distance = 0, temperature = 0;
+        for (Sample s : query(serialId, fromMillis, toMillis)) {
+            long b = fromMillis + (s.getTimeMillis() - fromMillis) / bucketMillis * bucketMillis;
+            if (b != bucket && n > 0) {
+                result.add(new Sample(bucket, (float) (rx / n), (float) (oltRx / n), (float) (distance / n), (float) (temperature / n)));
+                n = 0;
+                rx = oltRx = distance = temperature = 0;
+            }
+            bucket = b;
+            n++;
+            rx += s.getRx();
+            oltRx += s.getOltRx();
+            distance += s.getDistance();
+            temperature += s.getTemperature();
+        }
+        if (n > 0) {
+            result.add(new Sample(bucket, (float) (rx / n), (float) (oltRx / n), (float) (distance / n), (float) (temperature / n)));
+        }
+        return result;
+    }
+
+    private void readSlot(MappedByteBuffer buf, int base, long dayStart, long fromMillis, long toMillis, List<Sample> out) {
+        int count = buf.getInt(base + COUNT);
+        if (count <= 0) return;
+        BitReader r = new BitReader(buf, base + HEADER);
+        int ts = buf.getInt(base + FIRST_TS);
+        int delta = 0;
+        int[] values = new int[METRICS];
+        int[] lead = new int[METRICS];
+        int[] trail = new int[METRICS];
+
+        for (int k = 0; k < count; k++) {
+            if (k > 0) {
+                delta += readDeltaOfDelta(r);
+                ts += delta;
+            }
+            for (int m = 0; m < METRICS; m++) {
+                values[m] ^= readXor(r, lead, trail, m);
+            }
+            long time = dayStart + ts * 1000L;
+            if (time >= fromMillis && time < toMillis) {
+                out.add(new Sample(time, Float.intBitsToFloat(values[0]), Float.intBitsToFloat(values[1]),
+                        Float.intBitsToFloat(values[2]), Float.intBitsToFloat(values[3])));
+            }
+        }
+    }
+
+    private static int readDeltaOfDelta(BitReader r) {
+        if (r.read(1) == 0) return 0;
+        if (r.read(1) == 0) return signExtend((int) r.read(7), 7, 64);
+        if (r.read(1) == 0) return signExtend((int) r.read(9), 9, 256);
+        if (r.read(1) == 0) return signExtend((int) r.read(12), 12, 2048);
+        return (int) r.read(32);
+    }
+
+    private static int signExtend(int value, int bits, int max) {
+        return value > max ? value - (1 << bits) : value;
+    }
+
+    private static int readXor(BitReader r, int[] lead, int[] trail, int m) {
+        if (r.read(1) == 0) return 0;
+        if (r.read(1) == 0) {
+            int pl = lead[m] - 1;
+            return (int) r.read(32 - pl - trail[m]) << trail[m];
+        }
+        int l = (int) r.read(5);
+        int length = (int) r.read(5) + 1;
+        int t = 32 - l - length;
+        lead[m] = l + 1;
+        trail[m] = t;
+        return (int) r.read(length) << t;
+    }
+
+    private static long mask(int bits) {
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**************************************************************
+     * SEGMENT SECTION
+     **************************************************************/
+
+    private MappedByteBuffer segment(long day, int page, boolean create) {
+        String key = day + "-" + page;
+        MappedByteBuffer segment = segments.get(key);
+        if (segment != null) return segment;
+
+        synchronized (this) {
+            segment = segments.get(key);
+            if (segment != null) return segment;
+            File file = new File(dir, "onu-history-" + day + "-" + page + ".seg");
+            if (!create && !file.exists()) return null;
+            long size = (long) slotBytes << PAGE_BITS;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                if (raf.length() < size) raf.setLength(size);  // sparse on Linux
+                segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                logger.error("Unable to map history segment " + file + ": " + e.toString());
+                return null;
+            }
+            // Only the current day's segments stay mapped; older ones are mapped per query
+            if (day == currentDay) segments.put(key, segment);
+            return segment;
+        }
+    }
+
+    private synchronized void rollDay(long day) {
+        if (day == currentDay) return;
+        currentDay = day;
+        segments.clear();
+        File[] files = dir.listFiles((d, name) -> name.startsWith("onu-history-") && name.endsWith(".seg"));
+        if (files == null) return;
+        for (File file : files) {
+            String[] parts = file.getName().split("-");
+            try {
+                if (parts.length == 4 && Long.parseLong(parts[2]) < day - retentionDays && !file.delete()) {
+                    logger.info("Unable to delete old history segment {}", file);
+                }
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+    }
+
+    /**
+     * MSB-first bit writer over a slot's data area; stops at the slot end and sets overflow.
+     */
+    private static class BitWriter {
+        private final MappedByteBuffer buf;
+        private final int start;
+        private final int capacity;
+        int pos;
+        boolean overflow;
+
+        BitWriter(MappedByteBuffer buf, int start, int capacityBits, int pos) {
+            this.buf = buf;
+            this.start = start;
+            this.capacity = capacityBits;
+            this.pos = pos;
+        }
+
+        void write(long value, int bits) {
+            if (overflow || pos + bits > capacity) {
+                overflow = true;
+                return;
+            }
+            for (int i = bits - 1; i >= 0; i--) {
+                int index = start + (pos >>> 3);
+                int bit = 0x80 >>> (pos & 7);
+                byte b = buf.get(index);
+                buf.put(index, (byte) (((value >>> i) & 1) != 0 ? (b | bit) : (b & ~bit)));
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * MSB-first bit reader over a slot's data area.
+     */
+    private static class BitReader {
+        private final MappedByteBuffer buf;
+        private final int start;
+        private int pos;
+
+        BitReader(MappedByteBuffer buf, int start) {
+            this.buf = buf;
+            this.start = start;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                int b = buf.get(start + (pos >>> 3)) & 0xff;
+                value = (value << 1) | ((b >>> (7 - (pos & 7))) & 1);
+                pos++;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.snmp;
+
+/**
+ * How the OID index of an ONU below a metric column is obtained (nodetype.indexencoding).
+ *
+ * PARSED - taken once from the ONU's stored OID when the plan is loaded
+ * LINEAR - computed from card, port and ONU id:
+ *          indexBase + card * cardStride + port * portStride [+ onu * onuStride]
+ *          with the ONU id appended as its own sub-identifier when onuStride is 0
+ *          (e.g. ZTE GPON ifIndex.onu, Huawei 0xFA000000 + slot * 8192 + port * 256 . onu)
+ */
+public enum OnuIndexEncoding {
+    PARSED,
+    LINEAR;
+
+    public static OnuIndexEncoding fromString(String value, OnuIndexEncoding defaultValue) {
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+        try {
+            return OnuIndexEncoding.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
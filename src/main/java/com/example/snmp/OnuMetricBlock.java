@@ -0,0 +1,134 @@
+package com.example.snmp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Polled metrics of one node in parallel primitive arrays, indexed by the ONU's slot in the
+ * poll plan. Decoders store the raw values with {@link #setRaw}; {@link #convert(boolean)} then
+ * applies the decoder's unit conversion to the whole block in one loop, and Dao.saveData reads
+ * the converted values from here instead of from each NodeSerialOid.
+ *
+ * convert closes the block: responses of requests still in flight after a cancelled poll
+ * arrive later and are dropped, so the block handed to the writer no longer changes.
+ */
+public class OnuMetricBlock {
+
+    private final int size;
+    private final float[] rx;
+    private final float[] oltRx;
+    private final int[] distance;
+    private final float[] temperature;
+    private final AtomicLongArray valid;  // bit set: all metrics of the slot were decoded; lanes share words
+    private final StampedLock lock = new StampedLock();  // shared by writers, exclusive to close
+    private boolean closed;  // guarded by lock
+    private boolean converted;
+
+    /**
+     * @param size Number of ONUs in the poll plan
+     */
+    public OnuMetricBlock(int size) {
+        this.size = size;
+        this.rx = new float[size];
+        this.oltRx = new float[size];
+        this.distance = new int[size];
+        this.temperature = new float[size];
+        this.valid = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Store the raw (unconverted) values of one ONU and mark the slot valid.
+     * @param slot Index of the ONU in the poll plan
+     */
+    public void setRaw(int slot, float rawRx, int rawDistance, float rawOltRx, float rawTemperature) {
+        long stamp = lock.readLock();
+        try {
+            if (closed) return;
+            rx[slot] = rawRx;
+            distance[slot] = rawDistance;
+            oltRx[slot] = rawOltRx;
+            temperature[slot] = rawTemperature;
+            valid.getAndAccumulate(slot >>> 6, 1L << slot, (word, bit) -> word | bit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Mark a slot as not decoded; it is saved as zeros.
+     * @param slot Index of the ONU in the poll plan
+     */
+    public void setInvalid(int slot) {
+        long stamp = lock.readLock();
+        try {
+            if (closed) return;
+            valid.getAndAccumulate(slot >>> 6, ~(1L << slot), (word, mask) -> word & mask);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Stop accepting values; later setRaw / setInvalid calls are ignored. Waits for writes in progress.
+     */
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean isValid(int slot) {
+        return (valid.get(slot >>> 6) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Close the block and convert all raw values with the node's decoder. Slots that were not
+     * decoded become zero.
+     * @param decoder Decoder of the node (sentinel and scale rules)
+     */
+    public void convert(OnuMetricDecoder decoder) {
+        close();
+        if (converted) return;
+        converted = true;
+        boolean withTemperature = decoder.hasTemperature();
+        for (int i = 0; i < size; i++) {
+            if (!isValid(i)) {
+                clearSlot(i);
+                continue;
+            }
+            rx[i] = decoder.rxPower(rx[i]);
+            oltRx[i] = decoder.oltRxPower(oltRx[i]);
+            temperature[i] = withTemperature ? decoder.temperature(temperature[i]) : 0f;
+        }
+    }
+
+    private void clearSlot(int i) {
+        rx[i] = 0f;
+        distance[i] = 0;
+        oltRx[i] = 0f;
+        temperature[i] = 0f;
+    }
+
+    public float getRx(int slot) {
+        return rx[slot];
+    }
+
+    public int getDistance(int slot) {
+        return distance[slot];
+    }
+
+    public float getOltRx(int slot) {
+        return oltRx[slot];
+    }
+
+    public float getTemperature(int slot) {
+        return temperature[slot];
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.snmp;
+
+import org.snmp4j.smi.AssignableFromLong;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UnsignedInteger32;
+import org.snmp4j.smi.Variable;
+
+/**
+ * Decodes the ONU metrics of one OLT model. A decoder is chosen once per node by
+ * {@link OnuMetricDecoders#forNode(Node, NodeType)}; the pollers hand it the typed varbind
+ * values and it stores raw numbers in the node's OnuMetricBlock, after which
+ * OnuMetricBlock.convert applies the decoder's sentinel and scale rules to the whole block.
+ * Additional decoders can be registered in code or through
+ * META-INF/services/com.example.snmp.OnuMetricDecoder.
+ */
+public interface OnuMetricDecoder {
+
+    /**
+     * Vendor name matched against nodetype.vendor (case-insensitive).
+     */
+    String vendor();
+
+    /**
+     * True if this OLT model reports ONU temperature.
+     */
+    boolean hasTemperature();
+
+    /**
+     * Store the raw values of one ONU in its slot; a value that is not a number marks the slot invalid.
+     */
+    default void decode(Variable rx, Variable distance, Variable oltRx, Variable temperature,
+            OnuMetricBlock block, int slot) {
+        float rawRx = number(rx);
+        float rawDistance = number(distance);
+        float rawOltRx = number(oltRx);
+        float rawTemperature = hasTemperature() ? number(temperature) : 0f;
+        if (Float.isNaN(rawRx) || Float.isNaN(rawDistance) || Float.isNaN(rawOltRx) || Float.isNaN(rawTemperature)
+                || rawDistance != (int) rawDistance) {
+            block.setInvalid(slot);
+        } else {
+            block.setRaw(slot, rawRx, (int) rawDistance, rawOltRx, rawTemperature);
+        }
+    }
+
+    /**
+     * ONU rx power in dBm from the raw value (sentinels become 0).
+     */
+    float rxPower(float raw);
+
+    /**
+     * OLT rx power in dBm from the raw value (sentinels become 0).
+     */
+    float oltRxPower(float raw);
+
+    /**
+     * ONU temperature in degrees from the raw value.
+     */
+    float temperature(float raw);
+
+    /**
+     * Numeric value of a varbind without going through toString: integers and gauges are read
+     * directly, OctetStrings holding a decimal number are parsed byte by byte.
+     * @return Value, or NaN for Null/noSuchInstance and non-numeric strings
+     */
+    static float number(Variable variable) {
+        if (variable instanceof Integer32) {
+            return ((Integer32) variable).getValue();
+        }
+        if (variable instanceof UnsignedInteger32) {
+            return ((UnsignedInteger32) variable).getValue();
+        }
+        if (variable instanceof Counter64 || variable instanceof AssignableFromLong) {
+            return variable.toLong();
+        }
+        if (variable instanceof OctetString) {
+            return parseDecimal(((OctetString) variable).getValue());
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Parse an ASCII decimal number such as "-2134" or "-21.34".
+     * @return Value, or NaN if the bytes are not a number
+     */
+    static float parseDecimal(byte[] text) {
+        int i = 0;
+        int n = text.length;
+        while (i < n && text[i] == ' ') i++;
+        while (n > i && (text[n - 1] == ' ' || text[n - 1] == 0)) n--;
+        if (i == n) return Float.NaN;
+
+        boolean negative = false;
+        if (text[i] == '-' || text[i] == '+') {
+            negative = text[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean digits = false;
+        boolean fraction = false;
+        for (; i < n; i++) {
+            byte b = text[i];
+            if (b >= '0' && b <= '9') {
+                if (mantissa < 100000000000000L) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) scale++;
+                } else if (!fraction) {
+                    return Float.NaN;
+                }
+                digits = true;
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (!digits) return Float.NaN;
+        double value = mantissa;
+        for (int k = 0; k < scale; k++) value /= 10;
+        return (float) (negative ? -value : value);
+    }
+}
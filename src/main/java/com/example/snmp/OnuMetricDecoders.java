@@ -0,0 +1,57 @@
+package com.example.snmp;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of OnuMetricDecoders by vendor. The built-in ZTE and Huawei decoders are always
+ * present; decoders found through ServiceLoader are added on first use.
+ */
+public class OnuMetricDecoders {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnuMetricDecoders.class);
+
+    private static final OnuMetricDecoder ZTE = new ZteOnuDecoder();
+    private static final OnuMetricDecoder HUAWEI = new HuaweiOnuDecoder();
+
+    private static final Map<String, OnuMetricDecoder> decoders = new ConcurrentHashMap<>();
+
+    static {
+        register(ZTE);
+        register(HUAWEI);
+        for (OnuMetricDecoder decoder : ServiceLoader.load(OnuMetricDecoder.class)) {
+            register(decoder);
+            logger.info("Loaded ONU metric decoder for vendor {}", decoder.vendor());
+        }
+    }
+
+    private OnuMetricDecoders() {
+    }
+
+    /**
+     * Register a decoder, replacing any decoder of the same vendor.
+     * @param decoder Decoder to register
+     */
+    public static void register(OnuMetricDecoder decoder) {
+        decoders.put(decoder.vendor().toLowerCase(), decoder);
+    }
+
+    /**
+     * Decoder for a node: the one registered for the NodeType's vendor, otherwise the
+     * ZTE decoder for node types up to 10 and the Huawei decoder above.
+     * @param node Node to decode for
+     * @param nodeType NodeType of the node, may be null
+     * @return OnuMetricDecoder
+     */
+    public static OnuMetricDecoder forNode(Node node, NodeType nodeType) {
+        if (nodeType != null && nodeType.getVendor() != null) {
+            OnuMetricDecoder decoder = decoders.get(nodeType.getVendor().trim().toLowerCase());
+            if (decoder != null) return decoder;
+        }
+        return (node.getType() <= 10) ? ZTE : HUAWEI;
+    }
+}
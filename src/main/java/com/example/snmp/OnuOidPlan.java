@@ -0,0 +1,109 @@
+package com.example.snmp;
+
+import java.util.Arrays;
+
+import org.snmp4j.smi.OID;
+
+/**
+ * Builds the metric OIDs of an ONU from its NodeType's column base OIDs and the ONU's compact
+ * integer index, so the poll plan does not have to carry and parse an OID string per metric.
+ * ONUs without an index (or a NodeType without the column) fall back to their stored OID strings.
+ */
+public class OnuOidPlan {
+
+    public static final int RX = 0;
+    public static final int DISTANCE = 1;
+    public static final int OLT_RX = 2;
+    public static final int TEMPERATURE = 3;
+
+    private final int[][] columns = new int[4][];
+    private final NodeType nodeType;
+
+    /**
+     * @param nodeType NodeType with the metric column OIDs and index encoding, may be null
+     */
+    public OnuOidPlan(NodeType nodeType) {
+        this.nodeType = nodeType;
+        if (nodeType != null) {
+            columns[RX] = parse(nodeType.getOidOnuRxPower());
+            columns[DISTANCE] = parse(nodeType.getOidOnuDistance());
+            columns[OLT_RX] = parse(nodeType.getOidOltRxPower());
+            columns[TEMPERATURE] = parse(nodeType.getOidOnuTemperature());
+        }
+    }
+
+    /**
+     * True if all three always-polled metric columns are configured, i.e. a compact plan
+     * can be polled without OID strings.
+     */
+    public boolean isCompact() {
+        return columns[RX] != null && columns[DISTANCE] != null && columns[OLT_RX] != null;
+    }
+
+    /**
+     * OID of one metric of an ONU.
+     * @param metric RX, DISTANCE, OLT_RX or TEMPERATURE
+     * @param nso ONU of the plan
+     * @return Column base with the ONU index appended, the ONU's stored OID string parsed,
+     *         or null if the ONU has neither
+     */
+    public OID oid(int metric, NodeSerialOid nso) {
+        int[] index = nso.getOnuIndex();
+        int[] column = columns[metric];
+        if (index != null && column != null) {
+            int[] value = Arrays.copyOf(column, column.length + index.length);
+            System.arraycopy(index, 0, value, column.length, index.length);
+            return new OID(value);
+        }
+        String oid;
+        switch (metric) {
+            case RX: oid = nso.getOidOnuRxPower(); break;
+            case DISTANCE: oid = nso.getOidDistance(); break;
+            case OLT_RX: oid = nso.getOidOltRxPower(); break;
+            default: oid = nso.getOidTemperature(); break;
+        }
+        return (oid != null && !oid.isEmpty()) ? new OID(oid) : null;
+    }
+
+    /**
+     * Column base OID of a metric.
+     * @return Column OID, or null if the NodeType does not define it
+     */
+    public OID column(int metric) {
+        return columns[metric] != null ? new OID(columns[metric]) : null;
+    }
+
+    /**
+     * Index of an ONU from its card, port and ONU id (LINEAR encoding).
+     * @return OID index, or null if the NodeType does not use LINEAR
+     */
+    public int[] encode(int card, int port, int onu) {
+        if (nodeType == null || nodeType.getIndexEncoding() != OnuIndexEncoding.LINEAR) return null;
+        long index = nodeType.getIndexBase() + card * nodeType.getCardStride() + port * nodeType.getPortStride();
+        if (nodeType.getOnuStride() > 0) {
+            return new int[] { (int) (index + onu * nodeType.getOnuStride()) };
+        }
+        return new int[] { (int) index, onu };
+    }
+
+    /**
+     * Index of an ONU taken from one of its stored metric OIDs (PARSED encoding).
+     * @param metric Metric the OID belongs to
+     * @param oid Stored OID string
+     * @return Sub-identifiers below the metric column, or null if the OID is not below it
+     */
+    public int[] indexOf(int metric, String oid) {
+        int[] column = columns[metric];
+        if (column == null || oid == null || oid.isEmpty()) return null;
+        int[] value = new OID(oid.trim()).getValue();
+        if (value.length <= column.length) return null;
+        for (int i = 0; i < column.length; i++) {
+            if (value[i] != column[i]) return null;
+        }
+        return Arrays.copyOfRange(value, column.length, value.length);
+    }
+
+    private static int[] parse(String oid) {
+        return (oid != null && !oid.trim().isEmpty()) ? new OID(oid.trim()).getValue() : null;
+    }
+}
@@ -3,27 +3,17 @@ package com.example.snmp;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 
 // For logging
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snmp4j.CommunityTarget;
-import org.snmp4j.Snmp;
-import org.snmp4j.TransportMapping;
-import org.snmp4j.smi.Null;
 import org.snmp4j.smi.OID;
-import org.snmp4j.smi.UdpAddress;
-import org.snmp4j.smi.VariableBinding;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
-import org.snmp4j.util.DefaultPDUFactory;
-import org.snmp4j.util.TreeEvent;
-import org.snmp4j.util.TreeUtils;
 
 /**
  * This class handles SNMP Walk operations for all ONUs under a node.
@@ -47,29 +37,33 @@ public class OnuSerialFillerApp {
         List<Node> nodes = dao.getNodes(nType, region);
         logger.info("Total Nodes = " + nodes.size());
 
-        // Limit threads to 50 for concurrent SNMP walks
-        int threadpool = 50;
-        ExecutorService executor = Executors.newFixedThreadPool(threadpool);
+        // Limit concurrent SNMP walks (parameter.discoverythreadpool, default 50)
+        Parameter parameter = dao.getSnmpConfig();
+        FanOutExecutor executor = FanOutExecutor.create("discovery", parameter.getDiscoveryThreadPool(),
+                parameter.isVirtualThreads());
         List<Future<?>> futures = new ArrayList<>();
 
         // Retrieve NodeType object for current node type
         NodeType nodeType = dao.getNodeTypeById(nType);
 
-        for (Node node : nodes) {
-
-            // Skip nodes that are not reachable via ping
-            if (!hc.isReachable(node, dao)) {
-                logger.error(node.getIp() + " is not reachable (ping failed)");
-                continue;
-            }
+        // The onuoid index is shared by all nodes of the type; reload it only if onuoid changed
+        dao.refreshOnuOidIndex(nodeType);
 
-            // Submit SNMP walk task for the node
-            Future<?> future = executor.submit(() -> {
-                try {
-                    sendSnmpWalkAllOnus(node, nodeType, dao);
-                } catch (Exception e) {
-                    logger.error("❌ Error querying " + node.getIp() + ": " + e.getMessage());
+        // Probe all nodes concurrently; each walk starts as soon as its node's probe answers
+        ReachabilityProber prober = ReachabilityProber.getInstance(parameter);
+        for (Node node : nodes) {
+            CompletableFuture<Void> future = prober.probe(node, dao).thenCompose(reachable -> {
+                if (!reachable) {
+                    return CompletableFuture.completedFuture(null);
                 }
+                // Submit SNMP walk task for the node
+                return executor.runAsync(() -> {
+                    try {
+                        sendSnmpWalkAllOnus(node, nodeType, dao);
+                    } catch (Exception e) {
+                        logger.error("❌ Error querying " + node.getIp() + ": " + e.getMessage());
+                    }
+                });
             });
             futures.add(future);
         }
@@ -85,138 +79,141 @@ public class OnuSerialFillerApp {
 
         // Shutdown executor and update final ONUs in database
         executor.shutdown();
+        AuditSink.flushIfStarted();
         logger.info("Execution dao.updateOnuserialFromOnuserialraw() ");
         dao.updateOnuserialFromOnuserialraw();
     }
 
     /**
      * Performs SNMP walk on a single node to retrieve all ONUs' information.
-     * Retrieves description, last online timestamp, and serial for each ONU.
+     * Retrieves description, last online timestamp, and serial for each ONU. The three columns
+     * are walked at the same time and rows are upserted in chunks while the walks go on
+     * (see OnuDiscoveryWalk). With parameter.discoveryincremental only the PON ports whose
+     * change indicator moved are walked, except every parameter.discoveryfullsyncsec (see
+     * DiscoveryState).
      */
     public void sendSnmpWalkAllOnus(Node node, NodeType nodeType, Dao dao) {
 
-        List<OnuSerialWithOidClass> resultListOnuSerial = new ArrayList<>();
         long startTime = System.currentTimeMillis();
         int counter = 0;
 
-        TransportMapping<UdpAddress> transport = null;
-        Snmp snmp = null;
-
         try {
-            // Initialize SNMP transport and session
-            transport = new DefaultUdpTransportMapping();
-            transport.listen();
-            snmp = new Snmp(transport);
+            // Shared SNMP engine; no per-node transport is opened
+            SnmpEngine engine = SnmpEngine.getInstance();
 
             // Prepare SNMP target for the node
             CommunityTarget target = hc.getCommunityTarget(node);
 
-            // Create OIDs for ONU description, last online, and serial
-            OID rootOIDOnuDescription = new OID(nodeType.getOidOnuDescription());
-            OID rootOIDOnuLastOnline = new OID(nodeType.getOidOnuLastOnDateTime());
-            OID rootOIDSerial = new OID(nodeType.getOidOnuSerial());
+            // Complete rows are upserted in chunks of parameter.discoverychunkrows
+            Parameter parameter = dao.getSnmpConfig();
+            OnuDiscoveryWalk walk = new OnuDiscoveryWalk(node, nodeType, parameter.getDiscoveryChunkRows(),
+                    chunk -> {
+                        try {
+                            dao.updateOnuSerialRawBulk(chunk, nodeType, node);
+                        } catch (SQLException e) {
+                            logger.error("Error In Updating OnuSerialRaw table!!! " + e.toString());
+                        }
+                    });
+
+            // Incremental discovery: read the per-port change indicator and walk only the ports that moved
+            DiscoveryState state = parameter.isDiscoveryIncremental() ? DiscoveryState.get(parameter, node) : null;
+            Map<Long, Long> current = null;
+            long[] changed = null;
+            if (state != null && !state.isFullSyncDue(System.currentTimeMillis(), parameter.getDiscoveryFullSyncSeconds())) {
+                current = readPortIndicator(engine, node, nodeType, target, parameter.getBulkMaxRepetitions());
+                if (current != null) {
+                    changed = state.changedPorts(current);
+                    if (changed.length > current.size() / 2) {
+                        // Most ports moved: one full walk is cheaper than many small ones
+                        logger.info("Node {}: {} of {} ports changed, walking completely", node.getIp(),
+                                changed.length, current.size());
+                        changed = null;
+                    } else if (changed.length == 0) {
+                        logger.info("Node {}: no port changed since the last discovery", node.getIp());
+                    }
+                }
+            }
 
-            // SNMP tree utility to walk subtree
-            TreeUtils treeUtils = new TreeUtils(snmp, new DefaultPDUFactory());
+            CompletableFuture<Integer> walked;
+            if (changed != null) {
+                walked = walk.startPorts(engine, target, changed, parameter.getBulkMaxRepetitions());
+            } else {
+                // Large OLTs: each column is cut into card / PON port ranges known from onuoid
+                int partitions = parameter.getDiscoveryWalkPartitions() > 0
+                        ? parameter.getDiscoveryWalkPartitions() : parameter.getThreadPerNode();
+                OidSuffixIndex onuOids = partitions > 1 ? dao.getOnuOidIndex(nodeType) : null;
+                long[] boundaries = onuOids != null ? onuOids.partitionArcs(partitions) : new long[0];
+
+                // Walk description, last online and serial concurrently
+                walked = boundaries.length > 0
+                        ? walk.startPartitioned(engine, target, boundaries, parameter.getBulkMaxRepetitions())
+                        : walk.start(engine, target, parameter.getBulkMaxRepetitions());
+            }
+            // Wait for the last chunk
+            counter = walked.get();
 
-            // Retrieve all SNMP data for the node
-            List<TreeEvent> events = treeUtils.getSubtree(target, rootOIDOnuDescription);
-            List<TreeEvent> eventsLastOn = treeUtils.getSubtree(target, rootOIDOnuLastOnline);
-            List<TreeEvent> eventsOnuSerial = treeUtils.getSubtree(target, rootOIDSerial);
+            if (parameter.isDiscoveryIncremental() && !walk.isWalkFailed()) {
+                recordDiscoveryState(engine, node, nodeType, target, parameter, walk, state, current, changed != null);
+            }
 
             // Check if SNMP response is empty
-            if (events == null || events.isEmpty()) {
+            if (counter == 0 && changed == null) {
                 System.err.println("No SNMP response received from " + node.getIp());
                 logger.info("No SNMP response received from " + node.getIp());
-            } else {
-                int i = 0;
-
-                for (TreeEvent event : events) {
-                    if (event == null || event.isError()) {
-                        System.err.println("SNMP error from " + node.getIp() + ": " + event.getErrorMessage());
-                        continue;
-                    }
-
-                    TreeEvent eventOnuLastOn = eventsLastOn.get(i);
-                    TreeEvent eventOnuSerial = eventsOnuSerial.get(i);
-
-                    VariableBinding[] vbs = event.getVariableBindings();
-                    VariableBinding[] vbsOnuLastOn = eventOnuLastOn.getVariableBindings();
-                    VariableBinding[] vbsOnuSerial = eventOnuSerial.getVariableBindings();
-
-                    if (vbs == null)
-                        continue;
-
-                    int j = 0;
-
-                    for (VariableBinding vb : vbs) {
-                        VariableBinding vbOnuLastOn = vbsOnuLastOn[j];
-                        VariableBinding vbOnuSerial = vbsOnuSerial[j];
-
-                        // Extract ONU description safely
-                        String rawValue = (vb != null && vb.getVariable() != null
-                                && !(vb.getVariable() instanceof Null))
-                                        ? vb.getVariable().toString()
-                                        : "";
-
-                        // Extract last online timestamp safely
-                        String rawValueOnuLastOn = (vbOnuLastOn != null && vbOnuLastOn.getVariable() != null
-                                && !(vbOnuLastOn.getVariable() instanceof Null))
-                                ? vbOnuLastOn.getVariable().toString()
-                                : "";
-
-                        Timestamp onuLastOnline = hc.parseSnmpDate(rawValueOnuLastOn);
-
-                        // Extract ONU serial safely
-                        String rawValueOnuSerial = (vbOnuSerial != null && vbOnuSerial.getVariable() != null
-                                && !(vbOnuSerial.getVariable() instanceof Null))
-                                        ? vbOnuSerial.getVariable().toString()
-                                        : "";
-
-                        // Create ONU serial objects
-                        OnuSerialWithOidClass onuSerialWithOidClass = new OnuSerialWithOidClass();
-                        OnuSerial onuSerial = new OnuSerial();
-                        onuSerial.setName(rawValue);
-                        onuSerial.setSerial(hc.macToCustomFormat(rawValueOnuSerial));
-                        onuSerial.setOnuLastOnline(onuLastOnline);
-
-                        onuSerialWithOidClass.setOnuSerial(onuSerial);
-                        onuSerialWithOidClass
-                                .setOidOnuSerial(vbOnuSerial != null ? vbOnuSerial.getOid().toString() : "");
-
-                        // Add to result list
-                        resultListOnuSerial.add(onuSerialWithOidClass);
-
-                        j++;
-                        counter++;
-                    }
-                    i++;
-                }
             }
 
-        } catch (IOException e) {
+        } catch (IOException | ExecutionException e) {
             System.err.println("SNMP walk failed for node " + node.getIp() + ": " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            // Close SNMP session and transport safely
-            try {
-                if (snmp != null) snmp.close();
-                if (transport != null) transport.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        // Bulk update ONU serials into database
+        long endTime = System.currentTimeMillis();
+        double durationInSeconds = (endTime - startTime) / 1000.0;
+        logger.info("Total duration for node {}: {} ONUs in {} seconds", node.getIp(), counter, durationInSeconds);
+    }
+
+    /**
+     * Read the per-port change indicator of a node: the NodeType's port change column if it has
+     * one, otherwise the last-online column summed up per port.
+     * @return Fingerprint of every port, or null if the walk failed
+     */
+    private Map<Long, Long> readPortIndicator(SnmpEngine engine, Node node, NodeType nodeType,
+            CommunityTarget target, int maxRepetitions) throws InterruptedException {
+        String column = nodeType.getOidPortChange() != null && !nodeType.getOidPortChange().trim().isEmpty()
+                ? nodeType.getOidPortChange().trim() : nodeType.getOidOnuLastOnDateTime();
+        OID root = new OID(column);
+        DiscoveryState.PortFingerprints fingerprints = new DiscoveryState.PortFingerprints(root);
         try {
-            dao.updateOnuSerialRawBulk(resultListOnuSerial, nodeType, node);
-        } catch (SQLException e) {
-            logger.error("Error In Updating OnuSerialRaw table!!! " + e.toString());
+            engine.walk(node, target, root, maxRepetitions, fingerprints::add).get();
+            return fingerprints.toMap();
+        } catch (ExecutionException e) {
+            logger.info("Port change indicator of " + node.getIp() + " not read, walking completely: " + e.getMessage());
+            return null;
         }
+    }
 
-        long endTime = System.currentTimeMillis();
-        double durationInSeconds = (endTime - startTime) / 1000.0;
-        logger.info("Total duration for node {}: {} seconds", node.getIp(), durationInSeconds);        
+    /**
+     * Remember the port fingerprints after a successful walk. A full walk starts a new full sync
+     * cycle; after a partial walk the fingerprints read before it are kept.
+     */
+    private void recordDiscoveryState(SnmpEngine engine, Node node, NodeType nodeType, CommunityTarget target,
+            Parameter parameter, OnuDiscoveryWalk walk, DiscoveryState state, Map<Long, Long> current,
+            boolean partial) throws InterruptedException {
+        if (partial) {
+            DiscoveryState.put(parameter, node, state.withPorts(current));
+            return;
+        }
+        boolean portIndexed = walk.getLastOnlinePorts().isPortIndexed();
+        Map<Long, Long> ports = nodeType.getOidPortChange() != null && !nodeType.getOidPortChange().trim().isEmpty()
+                ? readPortIndicator(engine, node, nodeType, target, parameter.getBulkMaxRepetitions())
+                : walk.getLastOnlinePorts().toMap();
+        if (ports == null) return;
+        if (!portIndexed) {
+            logger.info("Node {}: ONU indexes have no port arc, incremental discovery walks it completely", node.getIp());
+        }
+        DiscoveryState.put(parameter, node, new DiscoveryState(System.currentTimeMillis(), portIndexed, ports));
     }
 
     /**
@@ -231,8 +228,13 @@ public class OnuSerialFillerApp {
             // Define node types to scan
             int[] nodetypes = { 9, 10, 12, 17, 18 };
 
+            // Shared SNMP engine with the configured transports, window and rate limits
+            Parameter parameter = new Dao(mode).getSnmpConfig();
+            SnmpEngine.start(parameter);
+
             // Executor to process multiple node types concurrently
-            ExecutorService executor1 = Executors.newFixedThreadPool(5);
+            FanOutExecutor executor1 = FanOutExecutor.create("discovery-type", nodetypes.length,
+                    parameter.isVirtualThreads());
             List<Future<?>> futures1 = new ArrayList<>();
 
             for (int nodetype : nodetypes) {
@@ -256,6 +258,8 @@ public class OnuSerialFillerApp {
             }
 
             executor1.shutdown();
+            AuditSink.shutdown();
+            SnmpEngine.shutdown();
 
             long endTime = System.currentTimeMillis();
             double durationInSeconds = (endTime - startTime) / 1000.0;
@@ -275,14 +279,16 @@ public class OnuSerialFillerApp {
 
             Dao d = new Dao(mode);
             int[] nodetypes = { 9, 10, 12, 17, 18 };
+            SnmpEngine.start(d.getSnmpConfig()); // No-op if the caller already started it
 
-            ExecutorService executor1 = Executors.newFixedThreadPool(5);
+            FanOutExecutor executor1 = FanOutExecutor.create("discovery-type", nodetypes.length,
+                    d.getSnmpConfig().isVirtualThreads());
             List<Future<?>> futures1 = new ArrayList<>();
 
             for (int nodetype : nodetypes) {
                 Future<?> future1 = executor1.submit(() -> {
                     try {
-                        (new OnuSerialFillerApp()).fillOnuSerial(new Dao("prod"), nodetype, "all");
+                        (new OnuSerialFillerApp()).fillOnuSerial(d, nodetype, "all");
                     } catch (Exception e) {
                         System.out.println("❌ Error querying " + ": " + e.getMessage());
                     }
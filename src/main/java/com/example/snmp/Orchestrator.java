@@ -0,0 +1,241 @@
+package com.example.snmp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls every (node type, region) work unit from one JVM instead of one container per unit.
+ * Units load their nodes in parallel and every node poll runs on one shared work-stealing
+ * pool, so threads freed by a region that finishes early go to the regions still running.
+ * All units share one SNMP engine and one DB pool sized to the number of concurrent writers.
+ */
+public class Orchestrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(Orchestrator.class);
+
+    // Same fan-out as run_ftth_monitor.sh
+    public static final int[] DEFAULT_TYPES = { 9, 10, 12, 17, 18 };
+    public static final String[] DEFAULT_REGIONS = { "fwrd", "krd", "mwrd", "erd", "wrd", "crd" };
+
+    private static final String COMMUNITY = "public";
+
+    private final String mode;
+    private final Dao dao;
+    private final Parameter parameter;
+    private final BiFunction<Node, NodeType, List<NodeSerialOid>> planSource;
+    // Blocked polls make the work-stealing pool add spare threads; this keeps node polls at threadPool
+    private final Semaphore nodePermits;
+
+    /**
+     * @param mode DB mode
+     * @param dao DAO of that mode
+     * @param parameter SNMP configuration
+     */
+    public Orchestrator(String mode, Dao dao, Parameter parameter) {
+        this(mode, dao, parameter, null);
+    }
+
+    /**
+     * @param mode DB mode
+     * @param dao DAO of that mode
+     * @param parameter SNMP configuration
+     * @param planSource Poll plan (ONU OIDs) of a node, e.g. a cache kept by the daemon;
+     *                   null streams each unit's plans with a PlanPrefetcher
+     */
+    public Orchestrator(String mode, Dao dao, Parameter parameter, BiFunction<Node, NodeType, List<NodeSerialOid>> planSource) {
+        this.planSource = planSource;
+        this.mode = mode;
+        this.dao = dao;
+        this.parameter = parameter;
+        this.nodePermits = new Semaphore(Math.max(1, parameter.getThreadPool()));
+    }
+
+    /**
+     * One (node type, region) work unit and its timing.
+     */
+    public static class WorkUnit {
+        private final int type;
+        private final String region;
+        private int nodes;
+        private final AtomicInteger polled = new AtomicInteger();
+        private long startMillis;
+        private long endMillis;
+
+        public WorkUnit(int type, String region) {
+            this.type = type;
+            this.region = region;
+        }
+
+        public int getType() {
+            return type;
+        }
+        public String getRegion() {
+            return region;
+        }
+        public int getNodes() {
+            return nodes;
+        }
+        public int getPolled() {
+            return polled.get();
+        }
+        public long getElapsedMillis() {
+            return endMillis - startMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "type=" + type + " region=" + region;
+        }
+    }
+
+    /**
+     * Poll all units and log the time of each unit and of the whole run.
+     * @param types Node types to poll
+     * @param regions Regions to poll
+     * @return Finished units in completion order
+     */
+    public List<WorkUnit> run(int[] types, String[] regions) {
+        long runStart = System.currentTimeMillis();
+
+        // Writer threads plus short plan / batch size queries of the concurrent node polls
+        int poolSize = parameter.getDbPoolSize() > 0 ? parameter.getDbPoolSize()
+                : parameter.getThreadPool() + parameter.getWriterThreads() + 2;
+        DataSourceSingleton.resize(mode, poolSize);
+
+        ExecutorService pool = Executors.newWorkStealingPool(Math.max(1, parameter.getThreadPool()));
+        List<WorkUnit> finished = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> units = new ArrayList<>();
+
+        for (int type : types) {
+            for (String region : regions) {
+                WorkUnit unit = new WorkUnit(type, region);
+                units.add(CompletableFuture
+                        .runAsync(() -> unit.startMillis = System.currentTimeMillis(), pool)
+                        .thenCompose(v -> pollUnit(unit, pool))
+                        .whenComplete((v, error) -> {
+                            unit.endMillis = System.currentTimeMillis();
+                            if (error != null) {
+                                logger.error("Unit " + unit + " failed: " + error.toString());
+                            }
+                            logger.info("Unit {} done: {}/{} nodes in {} ms", unit, unit.getPolled(),
+                                    unit.getNodes(), unit.getElapsedMillis());
+                            finished.add(unit);
+                        }));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(units.toArray(new CompletableFuture<?>[0])).join();
+        } catch (Exception e) {
+            logger.error("Orchestrator run ended with failed units: " + e.toString());
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Results still queued in the writer stage count towards the run
+        DbWriter.flushIfStarted();
+        AuditSink.flushIfStarted();
+
+        long totalms = System.currentTimeMillis() - runStart;
+        for (WorkUnit unit : finished) {
+            System.out.println("✅ " + unit + ": " + unit.getPolled() + "/" + unit.getNodes()
+                    + " nodes in " + unit.getElapsedMillis() / 1000 + " s");
+        }
+        System.out.println("\n✅ Total time for " + finished.size() + " units: " + totalms / 1000 / 60
+                + " minutes (" + totalms / 1000 + " s)");
+        logger.info("Orchestrator run of {} units finished in {} ms", finished.size(), totalms);
+        return finished;
+    }
+
+    // Loads the unit's nodes and fans each reachable node out onto the shared pool
+    private CompletableFuture<Void> pollUnit(WorkUnit unit, ExecutorService pool) {
+        // Without a plan source the unit comes from its snapshot, or its plans stream in with one
+        // query while the probes run
+        PlanPrefetcher prefetcher = planSource == null
+                ? PlanPrefetcher.load(dao, parameter, mode, unit.type, unit.region) : null;
+        List<Node> nodes = prefetcher != null ? prefetcher.getNodes() : dao.getNodes(unit.type, unit.region);
+        NodeType nodeType = prefetcher != null ? prefetcher.getNodeType() : dao.getNodeTypeById(unit.type);
+        unit.nodes = nodes.size();
+        logger.info("Unit {}: {} nodes", unit, nodes.size());
+
+        // Probes run concurrently; a node is handed to the pool once its own probe (and plan) answers
+        ReachabilityProber prober = ReachabilityProber.getInstance(parameter);
+        List<CompletableFuture<Void>> polls = new ArrayList<>();
+        for (Node node : nodes) {
+            CompletableFuture<Boolean> probe = prober.probe(node, dao);
+            if (prefetcher != null) {
+                polls.add(probe.thenCombineAsync(prefetcher.planOf(node), (reachable, plan) -> {
+                    if (reachable) pollNode(unit, node, nodeType, plan);
+                    return (Void) null;
+                }, pool));
+            } else {
+                polls.add(probe.thenAcceptAsync(reachable -> {
+                    if (reachable) pollNode(unit, node, nodeType, planSource.apply(node, nodeType));
+                }, pool));
+            }
+        }
+        return CompletableFuture.allOf(polls.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void pollNode(WorkUnit unit, Node node, NodeType nodeType, List<NodeSerialOid> plan) {
+        try {
+            nodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            App.sendSnmpGet(node, nodeType, COMMUNITY, plan, dao, parameter);
+            unit.polled.incrementAndGet();
+        } catch (IOException e) {
+            logger.error("Error querying " + node.getIp() + ": " + e.getMessage());
+        } finally {
+            nodePermits.release();
+        }
+    }
+
+    /**
+     * Parse a comma separated list of node types, e.g. "9,10,12".
+     * @param list Comma separated types, or null for the defaults
+     * @return Node types
+     */
+    public static int[] parseTypes(String list) {
+        if (list == null || list.trim().isEmpty()) return DEFAULT_TYPES;
+        String[] parts = list.split(",");
+        int[] types = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            types[i] = Integer.parseInt(parts[i].trim());
+        }
+        return types;
+    }
+
+    /**
+     * Parse a comma separated list of regions, e.g. "krd,erd".
+     * @param list Comma separated regions, or null for the defaults
+     * @return Regions
+     */
+    public static String[] parseRegions(String list) {
+        if (list == null || list.trim().isEmpty()) return DEFAULT_REGIONS;
+        String[] parts = list.split(",");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+        }
+        return parts;
+    }
+}
@@ -4,6 +4,49 @@ public class Parameter {
     private int threadPool = 100;      // default
     private int threadPerNode = 5;     // default
     private int batchSize = 5;         // default
+    private int snmpTransports = 2;    // shared UDP transports in SnmpEngine
+    private int snmpWorkerThreads = 4; // response processing threads in SnmpEngine
+    private PollStrategy pollStrategy = PollStrategy.SEPARATE; // default
+    private int bulkMaxRepetitions = 50; // GETBULK max-repetitions for the BULK strategy
+    private int minBatchSize = 1;        // lower bound of the adaptive batch size
+    private int maxBatchSize = 50;       // upper bound of the adaptive batch size
+    private long targetLatencyMs = 2000; // responses slower than this shrink the batch
+    private double nodeRequestsPerSecond = 0; // SNMP requests per second per OLT, 0 = unlimited
+    private int regionConcurrency = 0;   // SNMP requests in flight per region, 0 = unlimited
+    private int globalConcurrency = 0;   // SNMP requests in flight in total, 0 = unlimited
+    private int discoveryThreadPool = 50; // nodes walked at the same time by OnuSerialFillerApp
+    private boolean virtualThreads = false; // run node fan-out on virtual threads (Java 21+)
+    private int nodeTimeoutSeconds = 0;  // cancel a node's poll after this long, 0 = no limit
+    private int nodeMaxTimeouts = 3;     // consecutive SNMP timeouts before a poll or walk is cancelled, 0 = never
+    private int dbPoolSize = 0;          // DB connections in orchestrator mode, 0 = threadPool + writerThreads + 2
+    private int pollIntervalSeconds = 900;         // daemon: time between GET poll cycles
+    private int discoveryIntervalSeconds = 86400;  // daemon: time between OnuSerialFillerApp runs
+    private int scheduleJitterSeconds = 60;        // daemon: random extra delay added to each start
+    private ReachabilityProber.Method reachabilityProbe = ReachabilityProber.Method.ICMP; // ICMP or SNMP sysUpTime
+    private int reachabilityTimeoutMs = 2000;      // probe timeout
+    private int reachabilityTtlSeconds = 300;      // how long a probe result is reused
+    private int reachabilityThreads = 32;          // concurrent ICMP probes
+    private int writerThreads = 2;                 // DbWriter threads saving results
+    private int writerBatchRows = 1000;            // rows per JDBC batch in DbWriter
+    private int writerQueueCapacity = 256;         // chunks queued before pollers wait for MySQL
+    private WriteStrategy writeStrategy = WriteStrategy.BATCH; // BATCH updates or LOAD_DATA staging load
+    private boolean deltaWrites = false;           // skip rows that did not change beyond the thresholds below
+    private float deltaRxDb = 0.1f;                // ONU rx power change that forces a write
+    private float deltaOltRxDb = 0.1f;             // OLT rx power change that forces a write
+    private int deltaDistanceM = 0;                // distance change that forces a write
+    private float deltaTemperature = 1f;           // temperature change that forces a write
+    private int deltaRefreshSeconds = 3600;        // rows are rewritten at least this often
+    private String historyDir = "";                // local ONU history store (OnuHistoryStore), empty = off
+    private int historySlotBytes = 1024;           // compressed bytes per ONU and day
+    private int historyRetentionDays = 28;         // days of history kept on disk
+    private String planSnapshotDir = "";           // local poll plan snapshots (PlanSnapshot), empty = off
+    private int planSnapshotMaxAgeSeconds = 86400; // snapshots older than this are rebuilt even if current
+    private int auditFlushSeconds = 5;             // pingstatus / oidnotfound events are written this often
+    private int discoveryChunkRows = 500;          // discovery rows upserted per chunk while walks run
+    private int discoveryWalkPartitions = 0;       // index ranges per discovery column walk, 0 = threadPerNode
+    private boolean discoveryIncremental = false;  // re-walk only PON ports whose change indicator moved
+    private int discoveryFullSyncSeconds = 86400;  // nodes are still walked completely this often
+    private String discoveryStateDir = "";         // port fingerprints of incremental discovery, empty = memory only
 
     
     public Parameter() {
@@ -27,6 +70,264 @@ public class Parameter {
     public void setBatchSize(int batchSize) {
         this.batchSize = batchSize;
     }
+    public int getSnmpTransports() {
+        return snmpTransports;
+    }
+    public void setSnmpTransports(int snmpTransports) {
+        this.snmpTransports = snmpTransports;
+    }
+    public int getSnmpWorkerThreads() {
+        return snmpWorkerThreads;
+    }
+    public void setSnmpWorkerThreads(int snmpWorkerThreads) {
+        this.snmpWorkerThreads = snmpWorkerThreads;
+    }
+    public PollStrategy getPollStrategy() {
+        return pollStrategy;
+    }
+    public void setPollStrategy(PollStrategy pollStrategy) {
+        this.pollStrategy = pollStrategy;
+    }
+    public int getBulkMaxRepetitions() {
+        return bulkMaxRepetitions;
+    }
+    public void setBulkMaxRepetitions(int bulkMaxRepetitions) {
+        this.bulkMaxRepetitions = bulkMaxRepetitions;
+    }
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+    public long getTargetLatencyMs() {
+        return targetLatencyMs;
+    }
+    public void setTargetLatencyMs(long targetLatencyMs) {
+        this.targetLatencyMs = targetLatencyMs;
+    }
+    public double getNodeRequestsPerSecond() {
+        return nodeRequestsPerSecond;
+    }
+    public void setNodeRequestsPerSecond(double nodeRequestsPerSecond) {
+        this.nodeRequestsPerSecond = nodeRequestsPerSecond;
+    }
+    public int getRegionConcurrency() {
+        return regionConcurrency;
+    }
+    public void setRegionConcurrency(int regionConcurrency) {
+        this.regionConcurrency = regionConcurrency;
+    }
+    public int getGlobalConcurrency() {
+        return globalConcurrency;
+    }
+    public void setGlobalConcurrency(int globalConcurrency) {
+        this.globalConcurrency = globalConcurrency;
+    }
+    public int getDiscoveryThreadPool() {
+        return discoveryThreadPool;
+    }
+    public void setDiscoveryThreadPool(int discoveryThreadPool) {
+        this.discoveryThreadPool = discoveryThreadPool;
+    }
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+    public int getNodeTimeoutSeconds() {
+        return nodeTimeoutSeconds;
+    }
+    public void setNodeTimeoutSeconds(int nodeTimeoutSeconds) {
+        this.nodeTimeoutSeconds = nodeTimeoutSeconds;
+    }
+    public int getNodeMaxTimeouts() {
+        return nodeMaxTimeouts;
+    }
+    public void setNodeMaxTimeouts(int nodeMaxTimeouts) {
+        this.nodeMaxTimeouts = nodeMaxTimeouts;
+    }
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+    public void setDbPoolSize(int dbPoolSize) {
+        this.dbPoolSize = dbPoolSize;
+    }
+    public int getPollIntervalSeconds() {
+        return pollIntervalSeconds;
+    }
+    public void setPollIntervalSeconds(int pollIntervalSeconds) {
+        this.pollIntervalSeconds = pollIntervalSeconds;
+    }
+    public int getDiscoveryIntervalSeconds() {
+        return discoveryIntervalSeconds;
+    }
+    public void setDiscoveryIntervalSeconds(int discoveryIntervalSeconds) {
+        this.discoveryIntervalSeconds = discoveryIntervalSeconds;
+    }
+    public int getScheduleJitterSeconds() {
+        return scheduleJitterSeconds;
+    }
+    public void setScheduleJitterSeconds(int scheduleJitterSeconds) {
+        this.scheduleJitterSeconds = scheduleJitterSeconds;
+    }
+    public ReachabilityProber.Method getReachabilityProbe() {
+        return reachabilityProbe;
+    }
+    public void setReachabilityProbe(ReachabilityProber.Method reachabilityProbe) {
+        this.reachabilityProbe = reachabilityProbe;
+    }
+    public int getReachabilityTimeoutMs() {
+        return reachabilityTimeoutMs;
+    }
+    public void setReachabilityTimeoutMs(int reachabilityTimeoutMs) {
+        this.reachabilityTimeoutMs = reachabilityTimeoutMs;
+    }
+    public int getReachabilityTtlSeconds() {
+        return reachabilityTtlSeconds;
+    }
+    public void setReachabilityTtlSeconds(int reachabilityTtlSeconds) {
+        this.reachabilityTtlSeconds = reachabilityTtlSeconds;
+    }
+    public int getReachabilityThreads() {
+        return reachabilityThreads;
+    }
+    public void setReachabilityThreads(int reachabilityThreads) {
+        this.reachabilityThreads = reachabilityThreads;
+    }
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+    public int getWriterBatchRows() {
+        return writerBatchRows;
+    }
+    public void setWriterBatchRows(int writerBatchRows) {
+        this.writerBatchRows = writerBatchRows;
+    }
+    public int getWriterQueueCapacity() {
+        return writerQueueCapacity;
+    }
+    public void setWriterQueueCapacity(int writerQueueCapacity) {
+        this.writerQueueCapacity = writerQueueCapacity;
+    }
+    public WriteStrategy getWriteStrategy() {
+        return writeStrategy;
+    }
+    public void setWriteStrategy(WriteStrategy writeStrategy) {
+        this.writeStrategy = writeStrategy;
+    }
+    public boolean isDeltaWrites() {
+        return deltaWrites;
+    }
+    public void setDeltaWrites(boolean deltaWrites) {
+        this.deltaWrites = deltaWrites;
+    }
+    public float getDeltaRxDb() {
+        return deltaRxDb;
+    }
+    public void setDeltaRxDb(float deltaRxDb) {
+        this.deltaRxDb = deltaRxDb;
+    }
+    public float getDeltaOltRxDb() {
+        return deltaOltRxDb;
+    }
+    public void setDeltaOltRxDb(float deltaOltRxDb) {
+        this.deltaOltRxDb = deltaOltRxDb;
+    }
+    public int getDeltaDistanceM() {
+        return deltaDistanceM;
+    }
+    public void setDeltaDistanceM(int deltaDistanceM) {
+        this.deltaDistanceM = deltaDistanceM;
+    }
+    public float getDeltaTemperature() {
+        return deltaTemperature;
+    }
+    public void setDeltaTemperature(float deltaTemperature) {
+        this.deltaTemperature = deltaTemperature;
+    }
+    public int getDeltaRefreshSeconds() {
+        return deltaRefreshSeconds;
+    }
+    public void setDeltaRefreshSeconds(int deltaRefreshSeconds) {
+        this.deltaRefreshSeconds = deltaRefreshSeconds;
+    }
+    public String getHistoryDir() {
+        return historyDir;
+    }
+    public void setHistoryDir(String historyDir) {
+        this.historyDir = historyDir;
+    }
+    public int getHistorySlotBytes() {
+        return historySlotBytes;
+    }
+    public void setHistorySlotBytes(int historySlotBytes) {
+        this.historySlotBytes = historySlotBytes;
+    }
+    public int getHistoryRetentionDays() {
+        return historyRetentionDays;
+    }
+    public void setHistoryRetentionDays(int historyRetentionDays) {
+        this.historyRetentionDays = historyRetentionDays;
+    }
+    public String getPlanSnapshotDir() {
+        return planSnapshotDir;
+    }
+    public void setPlanSnapshotDir(String planSnapshotDir) {
+        this.planSnapshotDir = planSnapshotDir;
+    }
+    public int getPlanSnapshotMaxAgeSeconds() {
+        return planSnapshotMaxAgeSeconds;
+    }
+    public void setPlanSnapshotMaxAgeSeconds(int planSnapshotMaxAgeSeconds) {
+        this.planSnapshotMaxAgeSeconds = planSnapshotMaxAgeSeconds;
+    }
+    public int getAuditFlushSeconds() {
+        return auditFlushSeconds;
+    }
+    public void setAuditFlushSeconds(int auditFlushSeconds) {
+        this.auditFlushSeconds = auditFlushSeconds;
+    }
+    public int getDiscoveryChunkRows() {
+        return discoveryChunkRows;
+    }
+    public void setDiscoveryChunkRows(int discoveryChunkRows) {
+        this.discoveryChunkRows = discoveryChunkRows;
+    }
+    public int getDiscoveryWalkPartitions() {
+        return discoveryWalkPartitions;
+    }
+    public void setDiscoveryWalkPartitions(int discoveryWalkPartitions) {
+        this.discoveryWalkPartitions = discoveryWalkPartitions;
+    }
+    public boolean isDiscoveryIncremental() {
+        return discoveryIncremental;
+    }
+    public void setDiscoveryIncremental(boolean discoveryIncremental) {
+        this.discoveryIncremental = discoveryIncremental;
+    }
+    public int getDiscoveryFullSyncSeconds() {
+        return discoveryFullSyncSeconds;
+    }
+    public void setDiscoveryFullSyncSeconds(int discoveryFullSyncSeconds) {
+        this.discoveryFullSyncSeconds = discoveryFullSyncSeconds;
+    }
+    public String getDiscoveryStateDir() {
+        return discoveryStateDir;
+    }
+    public void setDiscoveryStateDir(String discoveryStateDir) {
+        this.discoveryStateDir = discoveryStateDir;
+    }
     
 
     
@@ -0,0 +1,161 @@
+package com.example.snmp;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the poll plans of a set of nodes in the background with one streaming query
+ * (Dao.streamNodePlans) and hands out one future per node, completed as soon as that
+ * node's rows have arrived. Polls are submitted right away and wait only for their own plan.
+ * If the bulk query is not available, the remaining nodes are loaded one by one with
+ * loadNodePlan, still off the submitting thread.
+ *
+ * load() first tries the unit's PlanSnapshot and writes a new one after a complete load.
+ */
+public class PlanPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanPrefetcher.class);
+
+    private final List<Node> nodes;
+    private final NodeType nodeType;
+    private final PlanSnapshot snapshot;
+    private final Map<Integer, CompletableFuture<List<NodeSerialOid>>> plans = new ConcurrentHashMap<>();
+    // true once every plan was read without a database error
+    private final CompletableFuture<Boolean> loaded = new CompletableFuture<>();
+
+    private PlanPrefetcher(List<Node> nodes, NodeType nodeType, PlanSnapshot snapshot) {
+        this.nodes = nodes;
+        this.nodeType = nodeType;
+        this.snapshot = snapshot;
+        if (snapshot == null) {
+            for (Node node : nodes) {
+                plans.put(node.getId(), new CompletableFuture<>());
+            }
+        } else {
+            loaded.complete(true);
+        }
+    }
+
+    /**
+     * Nodes, NodeType and plans of one (node type, region) unit: from the unit's snapshot when it
+     * is current, otherwise from the database, refreshing the snapshot once everything is loaded.
+     * @param dao DAO to load from
+     * @param parameter Snapshot settings
+     * @param mode DB mode
+     * @param type Node type
+     * @param region Region
+     * @return PlanPrefetcher to take the nodes and per-node futures from
+     */
+    public static PlanPrefetcher load(Dao dao, Parameter parameter, String mode, int type, String region) {
+        File file = PlanSnapshot.fileOf(parameter, mode, type, region);
+        String version = file != null ? dao.getPlanVersion() : null;
+        PlanSnapshot snapshot = PlanSnapshot.open(file, version, parameter.getPlanSnapshotMaxAgeSeconds());
+        if (snapshot != null) {
+            return new PlanPrefetcher(snapshot.getNodes(), snapshot.getNodeType(), snapshot);
+        }
+
+        List<Node> nodes = dao.getNodes(type, region);
+        NodeType nodeType = dao.getNodeTypeById(type);
+        PlanPrefetcher prefetcher = start(dao, nodes, nodeType);
+        if (version != null) {
+            prefetcher.loaded.thenAccept(complete -> {
+                if (complete) {
+                    PlanSnapshot.write(file, version, nodes, nodeType, prefetcher.collect());
+                } else {
+                    logger.info("Plan load had errors, snapshot {} not written", file);
+                }
+            });
+        }
+        return prefetcher;
+    }
+
+    /**
+     * Start loading the plans of the given nodes on a background thread.
+     * @param dao DAO to load from
+     * @param nodes Nodes to load
+     * @param nodeType NodeType of the nodes
+     * @return PlanPrefetcher to take the per-node futures from
+     */
+    public static PlanPrefetcher start(Dao dao, List<Node> nodes, NodeType nodeType) {
+        PlanPrefetcher prefetcher = new PlanPrefetcher(nodes, nodeType, null);
+        Thread thread = new Thread(() -> prefetcher.fetch(dao), "plan-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+        return prefetcher;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public NodeType getNodeType() {
+        return nodeType;
+    }
+
+    /**
+     * @param node Node of the plan
+     * @return Future of the node's plan; completes with an empty plan if the node has no ONUs
+     */
+    public CompletableFuture<List<NodeSerialOid>> planOf(Node node) {
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot.planOf(node.getId()));
+        }
+        CompletableFuture<List<NodeSerialOid>> plan = plans.get(node.getId());
+        return plan != null ? plan : CompletableFuture.completedFuture(Collections.<NodeSerialOid>emptyList());
+    }
+
+    // Plans of all nodes; only called once every future is complete
+    private Map<Integer, List<NodeSerialOid>> collect() {
+        Map<Integer, List<NodeSerialOid>> all = new HashMap<>();
+        for (Map.Entry<Integer, CompletableFuture<List<NodeSerialOid>>> entry : plans.entrySet()) {
+            all.put(entry.getKey(), entry.getValue().join());
+        }
+        return all;
+    }
+
+    private void fetch(Dao dao) {
+        boolean complete = true;
+        try {
+            boolean streamed = dao.streamNodePlans(nodes, nodeType, (nodeId, plan) -> {
+                CompletableFuture<List<NodeSerialOid>> future = plans.get(nodeId);
+                if (future != null) future.complete(plan);
+            });
+            if (!streamed) {
+                logger.info("Bulk plan query not available, loading plans node by node");
+            }
+            for (Node node : nodes) {
+                CompletableFuture<List<NodeSerialOid>> future = plans.get(node.getId());
+                if (future.isDone()) continue;
+                if (streamed) {
+                    future.complete(Collections.<NodeSerialOid>emptyList());  // node has no rows
+                    continue;
+                }
+                // Not reached before the bulk query failed
+                try {
+                    future.complete(dao.loadNodePlan(node.getId(), nodeType));
+                } catch (SQLException e) {
+                    logger.error("Database error loading plan of node " + node.getId() + ": " + e.getMessage());
+                    complete = false;
+                    future.complete(Collections.<NodeSerialOid>emptyList());
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Plan prefetch failed: " + e.toString());
+            complete = false;
+            // Never leave a poll waiting for a plan
+            for (CompletableFuture<List<NodeSerialOid>> future : plans.values()) {
+                future.complete(Collections.<NodeSerialOid>emptyList());
+            }
+        }
+        loaded.complete(complete);
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.snmp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary snapshot of one (node type, region) poll plan: the nodes, their NodeType and every
+ * node's ONU plan, kept in parameter.plansnapshotdir. It is written after a complete plan load
+ * and memory-mapped on the next start, so a short-lived run can poll without reading the plan
+ * tables. The snapshot stores the Dao.getPlanVersion() it was built from and is only used while
+ * that version is current and it is younger than parameter.plansnapshotmaxagesec.
+ *
+ * Plans keep what polling needs: row id, serial id, ONU id, node type, ONU index and the
+ * metric OID strings. Node plans are decoded from the mapped file when first asked for.
+ */
+public class PlanSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanSnapshot.class);
+
+    private static final int MAGIC = 0x504c414e;  // "PLAN"
+    private static final int FORMAT = 2;
+
+    private final ByteBuffer buffer;
+    private final NodeType nodeType;
+    private final List<Node> nodes;
+    private final Map<Integer, int[]> planOffsets;  // node id -> {offset, rows}
+
+    private PlanSnapshot(ByteBuffer buffer, NodeType nodeType, List<Node> nodes, Map<Integer, int[]> planOffsets) {
+        this.buffer = buffer;
+        this.nodeType = nodeType;
+        this.nodes = nodes;
+        this.planOffsets = planOffsets;
+    }
+
+    /**
+     * Snapshot file of a work unit.
+     * @param parameter Snapshot directory
+     * @param mode DB mode
+     * @param type Node type
+     * @param region Region
+     * @return File, or null if snapshots are disabled
+     */
+    public static File fileOf(Parameter parameter, String mode, int type, String region) {
+        String dir = parameter.getPlanSnapshotDir();
+        if (dir == null || dir.trim().isEmpty()) return null;
+        return new File(dir.trim(), "plan-" + mode + "-" + type + "-" + region.replaceAll("[^A-Za-z0-9_]", "_") + ".snap");
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public NodeType getNodeType() {
+        return nodeType;
+    }
+
+    /**
+     * @param nodeId Node ID
+     * @return Plan of the node, empty if the node is not in the snapshot
+     */
+    public List<NodeSerialOid> planOf(int nodeId) {
+        int[] location = planOffsets.get(nodeId);
+        if (location == null) return Collections.emptyList();
+        ByteBuffer in = buffer.duplicate();
+        in.position(location[0]);
+        List<NodeSerialOid> plan = new ArrayList<>(location[1]);
+        for (int i = 0; i < location[1]; i++) {
+            NodeSerialOid nso = new NodeSerialOid();
+            nso.setId(in.getInt());
+            nso.setSerialId(in.getInt());
+            nso.setOnuid(in.getInt());
+            nso.setNodeType(in.getInt());
+            int indexLength = in.get();
+            if (indexLength > 0) {
+                int[] index = new int[indexLength];
+                for (int k = 0; k < indexLength; k++) {
+                    index[k] = in.getInt();
+                }
+                nso.setOnuIndex(index);
+            }
+            nso.setOidOnuRxPower(readString(in));
+            nso.setOidDistance(readString(in));
+            nso.setOidOltRxPower(readString(in));
+            nso.setOidTemperature(readString(in));
+            plan.add(nso);
+        }
+        return plan;
+    }
+
+    /**************************************************************
+     * OPEN SECTION
+     **************************************************************/
+
+    /**
+     * Map a snapshot if it exists, matches the current plan version and is not too old.
+     * @param file Snapshot file
+     * @param version Current Dao.getPlanVersion()
+     * @param maxAgeSeconds Maximum age; 0 means no limit
+     * @return PlanSnapshot, or null if it must be rebuilt
+     */
+    public static PlanSnapshot open(File file, String version, int maxAgeSeconds) {
+        if (file == null || version == null || !file.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                logger.info("Plan snapshot {} has an unknown format, rebuilding", file);
+                return null;
+            }
+            long created = buffer.getLong();
+            if (maxAgeSeconds > 0 && System.currentTimeMillis() - created > maxAgeSeconds * 1000L) {
+                logger.info("Plan snapshot {} is older than {} s, rebuilding", file, maxAgeSeconds);
+                return null;
+            }
+            if (!version.equals(readString(buffer))) {
+                logger.info("Plan snapshot {} is stale, rebuilding", file);
+                return null;
+            }
+
+            NodeType nodeType = buffer.get() != 0 ? readNodeType(buffer) : null;
+            int nodeCount = buffer.getInt();
+            List<Node> nodes = new ArrayList<>(nodeCount);
+            Map<Integer, int[]> planOffsets = new HashMap<>();
+            int[] relative = new int[nodeCount * 2];
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(readNode(buffer));
+                relative[2 * i] = buffer.getInt();
+                relative[2 * i + 1] = buffer.getInt();
+            }
+            int planStart = buffer.position();
+            for (int i = 0; i < nodeCount; i++) {
+                planOffsets.put(nodes.get(i).getId(), new int[] { planStart + relative[2 * i], relative[2 * i + 1] });
+            }
+            logger.info("Plan snapshot {}: {} nodes, version {}", file, nodeCount, version);
+            return new PlanSnapshot(buffer, nodeType, Collections.unmodifiableList(nodes), planOffsets);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to read plan snapshot " + file + ": " + e.toString());
+            return null;
+        }
+    }
+
+    private static NodeType readNodeType(ByteBuffer in) {
+        NodeType nodeType = new NodeType();
+        nodeType.setId(in.getInt());
+        nodeType.setName(readString(in));
+        nodeType.setVendor(readString(in));
+        nodeType.setOidOnuSerial(readString(in));
+        nodeType.setOidOnuDescription(readString(in));
+        nodeType.setOidOnuLastOnDateTime(readString(in));
+        nodeType.setOidOnuDistance(readString(in));
+        nodeType.setOidOnuRxPower(readString(in));
+        nodeType.setOidOltRxPower(readString(in));
+        nodeType.setOidOnuTemperature(readString(in));
+        nodeType.setPollStrategy(PollStrategy.fromString(readString(in), null));
+        nodeType.setIndexEncoding(OnuIndexEncoding.fromString(readString(in), OnuIndexEncoding.PARSED));
+        nodeType.setIndexBase(in.getLong());
+        nodeType.setCardStride(in.getLong());
+        nodeType.setPortStride(in.getLong());
+        nodeType.setOnuStride(in.getLong());
+        nodeType.setOidPortChange(readString(in));
+        return nodeType;
+    }
+
+    private static Node readNode(ByteBuffer in) {
+        Node node = new Node();
+        node.setId(in.getInt());
+        node.setName(readString(in));
+        node.setType(in.getInt());
+        node.setIp(readString(in));
+        node.setAssignedID(readString(in));
+        node.setShelfncard(readString(in));
+        node.setService(readString(in));
+        node.setPortspercard(in.getInt());
+        node.setRegion(readString(in));
+        node.setExchange(readString(in));
+        node.setSnmpcommunity(readString(in));
+        node.setSnmpwritecommunity(readString(in));
+        node.setSysname(readString(in));
+        long timestamp = in.getLong();
+        node.setTimestamp(timestamp != Long.MIN_VALUE ? new Timestamp(timestamp) : null);
+        return node;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**************************************************************
+     * WRITE SECTION
+     **************************************************************/
+
+    /**
+     * Write a snapshot atomically (temporary file, then rename).
+     * @param file Snapshot file
+     * @param version Dao.getPlanVersion() read before the plan was loaded
+     * @param nodes Nodes of the unit
+     * @param nodeType NodeType of the unit, may be null
+     * @param plans Plan of every node, by node ID
+     */
+    public static void write(File file, String version, List<Node> nodes, NodeType nodeType,
+            Map<Integer, List<NodeSerialOid>> plans) {
+        long start = System.currentTimeMillis();
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            logger.error("Plan snapshot directory {} cannot be created", dir);
+            return;
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        int rows = 0;
+        try {
+            // Plans first, to know each node's offset in the plan section
+            ByteArrayOutputStream planBytes = new ByteArrayOutputStream();
+            DataOutputStream planOut = new DataOutputStream(planBytes);
+            int[] offsets = new int[nodes.size()];
+            int[] counts = new int[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                List<NodeSerialOid> plan = plans.get(nodes.get(i).getId());
+                offsets[i] = planOut.size();
+                counts[i] = plan != null ? plan.size() : 0;
+                if (plan == null) continue;
+                for (NodeSerialOid nso : plan) {
+                    writePlanRow(planOut, nso);
+                }
+                rows += plan.size();
+            }
+            planOut.flush();
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(System.currentTimeMillis());
+                writeString(out, version);
+                out.writeByte(nodeType != null ? 1 : 0);
+                if (nodeType != null) writeNodeType(out, nodeType);
+                out.writeInt(nodes.size());
+                for (int i = 0; i < nodes.size(); i++) {
+                    writeNode(out, nodes.get(i));
+                    out.writeInt(offsets[i]);
+                    out.writeInt(counts[i]);
+                }
+                planBytes.writeTo(out);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Plan snapshot {} written: {} nodes, {} ONUs in {} ms", file, nodes.size(), rows,
+                    System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.error("Unable to write plan snapshot " + file + ": " + e.toString());
+            tmp.delete();
+        }
+    }
+
+    private static void writePlanRow(DataOutputStream out, NodeSerialOid nso) throws IOException {
+        out.writeInt(nso.getId());
+        out.writeInt(nso.getSerialId());
+        out.writeInt(nso.getOnuid());
+        out.writeInt(nso.getNodeType());
+        int[] index = nso.getOnuIndex();
+        out.writeByte(index != null ? index.length : 0);
+        if (index != null) {
+            for (int value : index) {
+                out.writeInt(value);
+            }
+        }
+        writeString(out, nso.getOidOnuRxPower());
+        writeString(out, nso.getOidDistance());
+        writeString(out, nso.getOidOltRxPower());
+        writeString(out, nso.getOidTemperature());
+    }
+
+    private static void writeNodeType(DataOutputStream out, NodeType nodeType) throws IOException {
+        out.writeInt(nodeType.getId());
+        writeString(out, nodeType.getName());
+        writeString(out, nodeType.getVendor());
+        writeString(out, nodeType.getOidOnuSerial());
+        writeString(out, nodeType.getOidOnuDescription());
+        writeString(out, nodeType.getOidOnuLastOnDateTime());
+        writeString(out, nodeType.getOidOnuDistance());
+        writeString(out, nodeType.getOidOnuRxPower());
+        writeString(out, nodeType.getOidOltRxPower());
+        writeString(out, nodeType.getOidOnuTemperature());
+        writeString(out, nodeType.getPollStrategy() != null ? nodeType.getPollStrategy().name() : null);
+        writeString(out, nodeType.getIndexEncoding() != null ? nodeType.getIndexEncoding().name() : null);
+        out.writeLong(nodeType.getIndexBase());
+        out.writeLong(nodeType.getCardStride());
+        out.writeLong(nodeType.getPortStride());
+        out.writeLong(nodeType.getOnuStride());
+        writeString(out, nodeType.getOidPortChange());
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        out.writeInt(node.getId());
+        writeString(out, node.getName());
+        out.writeInt(node.getType());
+        writeString(out, node.getIp());
+        writeString(out, node.getAssignedID());
+        writeString(out, node.getShelfncard());
+        writeString(out, node.getService());
+        out.writeInt(node.getPortspercard());
+        writeString(out, node.getRegion());
+        writeString(out, node.getExchange());
+        writeString(out, node.getSnmpcommunity());
+        writeString(out, node.getSnmpwritecommunity());
+        writeString(out, node.getSysname());
+        out.writeLong(node.getTimestamp() != null ? node.getTimestamp().getTime() : Long.MIN_VALUE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.snmp;
+
+/**
+ * How App polls the ONU metrics of a node.
+ */
+public enum PollStrategy {
+    SEPARATE,   // one GET PDU per metric for every batch
+    COMBINED,   // all metrics of a batch in one GET PDU, halved on tooBig
+    BULK;       // GETBULK walk of each metric column, joined to the plan by OID index
+
+    /**
+     * Parse a strategy name as stored in the database.
+     * @param value Strategy name (case-insensitive), may be null
+     * @param defaultValue Strategy used when value is empty or unknown
+     * @return Matching PollStrategy
+     */
+    public static PollStrategy fromString(String value, PollStrategy defaultValue) {
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+        for (PollStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(value.trim())) return strategy;
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.snmp;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one JVM running and repeats GET polling and ONU discovery on their own intervals
+ * (parameter.pollintervalsec, parameter.discoveryintervalsec). The SNMP engine, the DB pool,
+ * learned batch sizes and the poll plans stay warm between cycles. The first poll and the first
+ * discovery run right after startup, so a new daemon picks up ONUs added while it was down.
+ * Every start is delayed by a random jitter (parameter.schedulejittersec) so MySQL and the
+ * OLTs are not hit in lockstep. A cycle is scheduled only after the previous one of the same kind has finished.
+ */
+public class PollingDaemon {
+
+    private static final Logger logger = LoggerFactory.getLogger(PollingDaemon.class);
+
+    private final String mode;
+    private final Dao dao;
+    private final Parameter parameter;
+    private final int[] types;
+    private final String[] regions;
+
+    // Poll plan per node ID; cleared after each discovery run, which may change the ONUs
+    private final Map<Integer, List<NodeSerialOid>> plans = new ConcurrentHashMap<>();
+
+    // One thread for polling and one for discovery, so a long discovery run does not delay polls
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "daemon-poll-scheduler"));
+    private final ScheduledExecutorService discoveryScheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "daemon-discovery-scheduler"));
+
+    private volatile boolean running = true;
+
+    /**
+     * @param mode DB mode
+     * @param dao DAO of that mode
+     * @param parameter SNMP configuration and daemon intervals
+     * @param types Node types polled each cycle
+     * @param regions Regions polled each cycle
+     */
+    public PollingDaemon(String mode, Dao dao, Parameter parameter, int[] types, String[] regions) {
+        this.mode = mode;
+        this.dao = dao;
+        this.parameter = parameter;
+        this.types = types;
+        this.regions = regions;
+    }
+
+    /**
+     * Schedule the first poll and discovery cycles and block until the daemon is stopped.
+     */
+    public void run() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        logger.info("Daemon started: poll every {} s, discovery every {} s, jitter {} s",
+                parameter.getPollIntervalSeconds(), parameter.getDiscoveryIntervalSeconds(),
+                parameter.getScheduleJitterSeconds());
+
+        schedulePoll(jitterMillis());
+        if (parameter.getDiscoveryIntervalSeconds() > 0) {
+            scheduleDiscovery(jitterMillis());
+        }
+
+        try {
+            while (!pollScheduler.awaitTermination(1, TimeUnit.HOURS)) {
+                // keep the main thread alive
+            }
+            discoveryScheduler.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop scheduling new cycles; a cycle already running is allowed to finish.
+     */
+    public void stop() {
+        if (!running) return;
+        running = false;
+        logger.info("Daemon stopping");
+        pollScheduler.shutdown();
+        discoveryScheduler.shutdown();
+        try {
+            pollScheduler.awaitTermination(10, TimeUnit.MINUTES);
+            discoveryScheduler.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedulePoll(long delayMillis) {
+        if (!running) return;
+        pollScheduler.schedule(() -> {
+            try {
+                new Orchestrator(mode, dao, parameter, this::planOf).run(types, regions);
+            } catch (Exception e) {
+                logger.error("Poll cycle failed: " + e.toString());
+            }
+            schedulePoll(parameter.getPollIntervalSeconds() * 1000L + jitterMillis());
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleDiscovery(long delayMillis) {
+        if (!running) return;
+        discoveryScheduler.schedule(() -> {
+            try {
+                new OnuSerialFillerApp().callableMain(mode);
+                plans.clear();
+                dao.invalidateReferenceData();
+            } catch (Exception e) {
+                logger.error("Discovery cycle failed: " + e.toString());
+            }
+            scheduleDiscovery(parameter.getDiscoveryIntervalSeconds() * 1000L + jitterMillis());
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Cached plan; results go to a fresh OnuMetricBlock each cycle, so the plan is read-only.
+    // A failed or empty load is not cached, so the node is tried again in the next cycle.
+    private List<NodeSerialOid> planOf(Node node, NodeType nodeType) {
+        List<NodeSerialOid> plan = plans.get(node.getId());
+        if (plan != null) return plan;
+        try {
+            plan = dao.loadNodePlan(node.getId(), nodeType);
+        } catch (SQLException e) {
+            logger.error("Database error loading plan of node " + node.getId() + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+        if (!plan.isEmpty()) {
+            plans.put(node.getId(), plan);
+        }
+        return plan;
+    }
+
+    private long jitterMillis() {
+        int jitter = parameter.getScheduleJitterSeconds();
+        return jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter * 1000L) : 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.snmp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Checks node reachability concurrently and caches the result per node for
+ * parameter.reachabilityttlsec seconds. Pollers chain their SNMP work on the returned future,
+ * so a reachable OLT starts as soon as its own probe answers and an OLT known to be dead
+ * is skipped without waiting for another timeout.
+ *
+ * Two probe methods (parameter.reachabilityprobe):
+ * ICMP - InetAddress.isReachable (ICMP echo, or TCP echo when the JVM may not send ICMP)
+ * SNMP - GET sysUpTime.0 through the shared SnmpEngine, with no retry
+ */
+public class ReachabilityProber {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReachabilityProber.class);
+
+    public enum Method {
+        ICMP, SNMP;
+
+        public static Method fromString(String value, Method defaultValue) {
+            if (value == null || value.trim().isEmpty()) return defaultValue;
+            try {
+                return Method.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    private static volatile ReachabilityProber instance;
+
+    private final Method method;
+    private final int timeoutMs;
+    private final long ttlMillis;
+    private final ExecutorService probeExecutor;
+
+    // Last probe result and its time, per node ID
+    private final Map<Integer, long[]> cache = new ConcurrentHashMap<>();
+    // Probes in progress, so a node is never probed twice at the same time
+    private final Map<Integer, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+
+    private ReachabilityProber(Parameter parameter) {
+        this.method = parameter.getReachabilityProbe();
+        this.timeoutMs = parameter.getReachabilityTimeoutMs();
+        this.ttlMillis = parameter.getReachabilityTtlSeconds() * 1000L;
+        AtomicInteger counter = new AtomicInteger();
+        this.probeExecutor = Executors.newFixedThreadPool(Math.max(1, parameter.getReachabilityThreads()), r -> {
+            Thread t = new Thread(r, "reachability-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Get the shared prober, creating it from the given configuration on first use.
+     * @param parameter Probe method, timeout, TTL and thread count
+     * @return Shared ReachabilityProber
+     */
+    public static ReachabilityProber getInstance(Parameter parameter) {
+        if (instance == null) {
+            synchronized (ReachabilityProber.class) {
+                if (instance == null) {
+                    instance = new ReachabilityProber(parameter);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Probe a node, or return the cached result if it is younger than the TTL.
+     * @param node Node to check
+     * @param dao DAO used to record reachability changes in pingstatus (see AuditSink)
+     * @return Future completed with true if the node answered
+     */
+    public CompletableFuture<Boolean> probe(Node node, Dao dao) {
+        long[] cached = cache.get(node.getId());
+        if (cached != null && System.currentTimeMillis() - cached[1] < ttlMillis) {
+            return CompletableFuture.completedFuture(cached[0] == 1);
+        }
+        // Register first and start the probe afterwards: a probe that completes at once must not
+        // touch the map from inside its own mapping function
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = pending.putIfAbsent(node.getId(), created);
+        if (running != null) {
+            return running;
+        }
+        CompletableFuture<Boolean> result;
+        try {
+            result = (method == Method.SNMP) ? probeSnmp(node) : probeIcmp(node);
+        } catch (RuntimeException e) {
+            logger.error("Probe of " + node.getIp() + " failed to start: " + e.toString());
+            result = CompletableFuture.completedFuture(false);
+        }
+        result.whenComplete((reachable, error) -> {
+            boolean ok = Boolean.TRUE.equals(reachable);
+            cache.put(node.getId(), new long[] { ok ? 1 : 0, System.currentTimeMillis() });
+            pending.remove(node.getId(), created);
+            try {
+                AuditSink.start(dao).reachability(node, ok);
+            } catch (RuntimeException e) {
+                // The probe result must still reach the pollers waiting on it
+                logger.error("Unable to record reachability of " + node.getIp() + ": " + e.toString());
+            }
+            if (!ok) {
+                logger.error(node.getIp() + " is not reachable (" + method + " probe failed)");
+            }
+            created.complete(ok);
+        });
+        return created;
+    }
+
+    /**
+     * Forget the cached result of a node, e.g. after its poll failed.
+     * @param node Node to forget
+     */
+    public void invalidate(Node node) {
+        cache.remove(node.getId());
+    }
+
+    private CompletableFuture<Boolean> probeIcmp(Node node) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return InetAddress.getByName(node.getIp()).isReachable(timeoutMs);
+            } catch (Exception e) {
+                logger.error("Error:: " + node.getIp() + ":::" + e.toString());
+                return false;
+            }
+        }, probeExecutor);
+    }
+
+    private CompletableFuture<Boolean> probeSnmp(Node node) {
+        SnmpEngine engine;
+        try {
+            engine = SnmpEngine.getInstance();
+        } catch (IOException e) {
+            logger.error("Unable to start SNMP engine: " + e.toString());
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CommunityTarget target = App.getCommunityTarget(node);
+        target.setRetries(0);
+        target.setTimeout(timeoutMs);
+        PDU pdu = new PDU();
+        pdu.add(new VariableBinding(SnmpConstants.sysUpTime));
+
+        return engine.send(node, target, pdu)
+                .handle((event, error) -> error == null && event != null && event.getResponse() != null);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.snmp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Reference data of one DB mode that rarely changes: node types, the parameter row and the
+ * onuoid index of each node type. Each entry is loaded once and shared by every Dao of the
+ * mode; a loader returning null (database error) is not cached, so the next call retries.
+ * Entries are dropped when the data is known to change (Dao.refreshOnuOidIndex after a
+ * version check, Dao.invalidateReferenceData after a discovery cycle).
+ */
+public class ReferenceCache {
+
+    private static final Map<String, ReferenceCache> caches = new ConcurrentHashMap<>();
+
+    private final Map<Integer, NodeType> nodeTypes = new ConcurrentHashMap<>();
+    private final Map<Integer, OidSuffixIndex> onuOidIndexes = new ConcurrentHashMap<>();
+    private volatile Parameter parameter;
+
+    private ReferenceCache() {
+    }
+
+    /**
+     * @param mode DB mode
+     * @return Shared cache of the mode
+     */
+    public static ReferenceCache forMode(String mode) {
+        return caches.computeIfAbsent(mode, m -> new ReferenceCache());
+    }
+
+    public NodeType nodeType(int id, IntFunction<NodeType> loader) {
+        return nodeTypes.computeIfAbsent(id, loader::apply);
+    }
+
+    public Parameter parameter(Supplier<Parameter> loader) {
+        Parameter cached = parameter;
+        if (cached == null) {
+            synchronized (this) {
+                cached = parameter;
+                if (cached == null) {
+                    cached = loader.get();
+                    parameter = cached;
+                }
+            }
+        }
+        return cached;
+    }
+
+    public OidSuffixIndex onuOidIndex(int nodeTypeId, IntFunction<OidSuffixIndex> loader) {
+        return onuOidIndexes.computeIfAbsent(nodeTypeId, loader::apply);
+    }
+
+    public OidSuffixIndex cachedOnuOidIndex(int nodeTypeId) {
+        return onuOidIndexes.get(nodeTypeId);
+    }
+
+    public void invalidateOnuOidIndex(int nodeTypeId) {
+        onuOidIndexes.remove(nodeTypeId);
+    }
+
+    public void invalidateAll() {
+        nodeTypes.clear();
+        onuOidIndexes.clear();
+        parameter = null;
+    }
+}
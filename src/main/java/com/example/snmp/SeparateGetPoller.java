@@ -0,0 +1,186 @@
+package com.example.snmp;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.PDU;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Polls a node with one GET PDU per metric (rx power, distance, OLT rx power, temperature)
+ * for every batch of ONUs. The batch size comes from the node's BatchSizeController and is
+ * read again for each batch, so the size follows what the OLT currently handles.
+ */
+public class SeparateGetPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeparateGetPoller.class);
+
+    private final SnmpEngine engine;
+    private final SnmpEngine.Operation operation;
+    private final Node node;
+    private final CommunityTarget target;
+    private final List<NodeSerialOid> nodeSerialOids;
+    private final BatchSizeController controller;
+    private final OnuOidPlan oidPlan;
+    private final OnuMetricDecoder decoder;
+    private final OnuMetricBlock results;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    /**
+     * @param engine Shared SNMP engine
+     * @param operation Poll of the node; cancelling it stops the remaining requests
+     * @param target SNMP target for the node
+     * @param nodeSerialOids ONUs to poll
+     * @param controller Adaptive batch size of the node
+     * @param oidPlan Builds the metric OIDs of each ONU
+     * @param decoder Vendor decoder of the node
+     * @param results Receives the decoded metrics, indexed like nodeSerialOids
+     */
+    public SeparateGetPoller(SnmpEngine engine, SnmpEngine.Operation operation, CommunityTarget target,
+            List<NodeSerialOid> nodeSerialOids, BatchSizeController controller, OnuOidPlan oidPlan,
+            OnuMetricDecoder decoder, OnuMetricBlock results) {
+        this.engine = engine;
+        this.operation = operation;
+        this.node = operation.getNode();
+        this.target = target;
+        this.nodeSerialOids = nodeSerialOids;
+        this.controller = controller;
+        this.oidPlan = oidPlan;
+        this.decoder = decoder;
+        this.results = results;
+    }
+
+    /**
+     * Poll all ONUs of the node.
+     * @param lanes Number of batches kept outstanding at the same time
+     * @return Future completed when every batch has been answered, timed out or failed
+     */
+    public CompletableFuture<Void> poll(int lanes) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.max(1, lanes)];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = nextBatch();
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    // Takes the next batch from the shared cursor and chains the following one on completion
+    private CompletableFuture<Void> nextBatch() {
+        int size = controller.current();
+        int start = cursor.getAndAdd(size);
+        if (start >= nodeSerialOids.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int end = Math.min(start + size, nodeSerialOids.size());
+        return request(start, end).thenCompose(v -> nextBatch());
+    }
+
+    private CompletableFuture<Void> request(int start, int end) {
+        List<NodeSerialOid> batch = nodeSerialOids.subList(start, end);
+
+        // Prepare PDUs for different OIDs (Rx power, distance, OLT power, temperature)
+        PDU pduOnuRxPower = new PDU();
+        PDU pduOnuDistance = new PDU();
+        PDU pduOltRxPower = new PDU();
+        PDU pduTemperature = new PDU();
+
+        // Add OIDs to PDUs
+        for (NodeSerialOid oid : batch) {
+            pduOnuRxPower.add(new VariableBinding(oidPlan.oid(OnuOidPlan.RX, oid)));
+            pduOnuDistance.add(new VariableBinding(oidPlan.oid(OnuOidPlan.DISTANCE, oid)));
+            pduOltRxPower.add(new VariableBinding(oidPlan.oid(OnuOidPlan.OLT_RX, oid)));
+            if (decoder.hasTemperature()) {
+                pduTemperature.add(new VariableBinding(oidPlan.oid(OnuOidPlan.TEMPERATURE, oid)));
+            }
+        }
+
+        // Send SNMP GET requests; all four are outstanding at the same time
+        CompletableFuture<ResponseEvent> response = engine.send(operation, target, pduOnuRxPower);
+        CompletableFuture<ResponseEvent> responseDistance = engine.send(operation, target, pduOnuDistance);
+        CompletableFuture<ResponseEvent> responseOltRxPower = engine.send(operation, target, pduOltRxPower);
+        CompletableFuture<ResponseEvent> responseTemperature = decoder.hasTemperature()
+                ? engine.send(operation, target, pduTemperature)
+                : CompletableFuture.completedFuture(null);
+
+        return CompletableFuture
+                .allOf(response, responseDistance, responseOltRxPower, responseTemperature)
+                .handle((ignored, error) -> {
+                    if (error != null) {
+                        logger.info("SNMP error on batch " + start + "-" + (end - 1) + ": " + error.getMessage());
+                        // Node cancelled or transport failed: end this lane instead of sending more batches
+                        CompletableFuture<Void> failed = new CompletableFuture<>();
+                        failed.completeExceptionally(error);
+                        return failed;
+                    }
+
+                    ResponseEvent[] events = { response.join(), responseDistance.join(),
+                            responseOltRxPower.join(), responseTemperature.join() };
+                    long latency = 0;
+                    boolean timedOut = false;
+                    boolean tooBig = false;
+                    for (ResponseEvent event : events) {
+                        if (event == null) continue;
+                        if (event.getResponse() == null) {
+                            timedOut = true;
+                        } else if (event.getResponse().getErrorStatus() == PDU.tooBig) {
+                            tooBig = true;
+                        }
+                        latency = Math.max(latency, SnmpEngine.latencyMillis(event));
+                    }
+
+                    if (tooBig && end - start > 1) {
+                        controller.onTooBig(end - start);
+                        int half = (end - start) / 2;
+                        return CompletableFuture.allOf(request(start, start + half), request(start + half, end));
+                    }
+                    if (timedOut) {
+                        controller.onTimeout();
+                    } else {
+                        controller.onSuccess(latency);
+                    }
+
+                    try {
+                        applyBatchResponses(start, end, events[0], events[1], events[2], events[3]);
+                    } catch (Exception e) {
+                        logger.info("SNMP error on batch " + start + "-" + (end - 1) + ": " + e.getMessage());
+                    }
+                    return CompletableFuture.<Void>completedFuture(null);
+                }).thenCompose(f -> f);
+    }
+
+    /**
+     * Decodes the four per-metric responses of one batch into the node's result block
+     */
+    private void applyBatchResponses(int start, int end,
+            ResponseEvent response, ResponseEvent responseDistance, ResponseEvent responseOltRxPower,
+            ResponseEvent responseTemperature) {
+
+        // Process SNMP responses
+        if (response != null && response.getResponse() != null) {
+            PDU responsePdu = response.getResponse();
+            PDU responsePduDistance = responseDistance.getResponse();
+            PDU responsePduOltRxpower = responseOltRxPower.getResponse();
+            PDU responsePduTemperature = decoder.hasTemperature() ? responseTemperature.getResponse() : null;
+
+            int localIndex = 0, m = 0;
+            for (VariableBinding vb : responsePdu.getVariableBindings()) {
+                // Retrieve corresponding OIDs from other PDUs
+                VariableBinding vbDistance = responsePduDistance.get(m);
+                VariableBinding vbOltRxpower = responsePduOltRxpower.get(m);
+                VariableBinding vbTemperature = decoder.hasTemperature() ? responsePduTemperature.get(m) : null;
+                m++;
+
+                decoder.decode(vb.getVariable(), vbDistance.getVariable(), vbOltRxpower.getVariable(),
+                        vbTemperature != null ? vbTemperature.getVariable() : null, results, start + localIndex);
+                localIndex++;
+            }
+        } else {
+            logger.info("No SNMP response from " + node.getIp() + " for batch " + start + "-" + (end - 1));
+        }
+    }
+}
@@ -0,0 +1,639 @@
+package com.example.snmp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.MessageDispatcher;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.util.MultiThreadedMessageDispatcher;
+import org.snmp4j.util.ThreadPool;
+
+/**
+ * Process-wide asynchronous SNMP engine.
+ * A handful of shared UDP transports serve every OLT. Requests are sent through
+ * SNMP4J's ResponseListener path and queued per node, so that at most
+ * {@link Parameter#getThreadPerNode()} requests are outstanding against a single OLT
+ * while thousands can be outstanding across all OLTs.
+ *
+ * Three optional limits protect the OLTs: requests per second per node, concurrent
+ * requests per region and concurrent requests in total. Each has its own queue: a node
+ * waits in its own FIFO for a token, in its region's FIFO for a region slot, and a region
+ * waits in the global FIFO for a global slot, so a slow region only holds up itself.
+ *
+ * Requests belong to an {@link Operation} (one poll, one discovery walk, one probe).
+ * Cancelling an operation, explicitly or after parameter.nodemaxtimeouts consecutive
+ * timeouts, fails only that operation's requests; other work on the same node goes on.
+ */
+public class SnmpEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnmpEngine.class);
+
+    private static volatile SnmpEngine instance;
+
+    private final Snmp[] sessions;
+    private final ThreadPool workerPool;
+    private final int windowPerNode;
+    private final double requestsPerSecondPerNode;
+    private final int regionConcurrency;
+    private final int globalConcurrency;
+    private final int nodeMaxTimeouts;
+    private final Map<Integer, NodeWindow> windows = new ConcurrentHashMap<>();
+    private final Map<String, RegionGate> regions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rateTimer;
+
+    // Scheduling state below is guarded by the engine lock
+    private final ArrayDeque<RegionGate> globalQueue = new ArrayDeque<>();
+    private int globalInFlight;
+
+    // Close shared transports on JVM exit, same as the DB pools
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shutdown();
+        }));
+    }
+
+    private SnmpEngine(Parameter parameter) throws IOException {
+        int transports = Math.max(1, parameter.getSnmpTransports());
+        this.windowPerNode = Math.max(1, parameter.getThreadPerNode());
+        this.requestsPerSecondPerNode = parameter.getNodeRequestsPerSecond();
+        this.regionConcurrency = parameter.getRegionConcurrency();
+        this.globalConcurrency = parameter.getGlobalConcurrency();
+        this.nodeMaxTimeouts = parameter.getNodeMaxTimeouts();
+        this.rateTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SnmpEngine-rate");
+            t.setDaemon(true);
+            return t;
+        });
+        this.workerPool = ThreadPool.create("SnmpEngine", Math.max(1, parameter.getSnmpWorkerThreads()));
+        this.sessions = new Snmp[transports];
+
+        for (int i = 0; i < transports; i++) {
+            MessageDispatcher dispatcher = new MultiThreadedMessageDispatcher(workerPool, new MessageDispatcherImpl());
+            TransportMapping<UdpAddress> transport = new DefaultUdpTransportMapping();
+            Snmp snmp = new Snmp(dispatcher, transport);
+            snmp.getMessageDispatcher().addMessageProcessingModel(new MPv1());
+            snmp.getMessageDispatcher().addMessageProcessingModel(new MPv2c());
+            snmp.listen();
+            sessions[i] = snmp;
+        }
+        logger.info("SNMP engine started with {} transports, {} workers, window {} per node, "
+                + "{} req/s per node, {} per region, {} in total (0 = unlimited)",
+                transports, parameter.getSnmpWorkerThreads(), windowPerNode,
+                requestsPerSecondPerNode, regionConcurrency, globalConcurrency);
+    }
+
+    /**
+     * Start the shared engine with the given configuration. Later calls return the running engine.
+     * @param parameter SNMP configuration (transports, workers, per-node window)
+     * @return Shared SnmpEngine
+     * @throws IOException if a UDP transport cannot be opened
+     */
+    public static SnmpEngine start(Parameter parameter) throws IOException {
+        if (instance == null) {
+            synchronized (SnmpEngine.class) {
+                if (instance == null) {
+                    instance = new SnmpEngine(parameter);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the shared engine, starting it with default parameters if nobody started it yet.
+     * @return Shared SnmpEngine
+     * @throws IOException if a UDP transport cannot be opened
+     */
+    public static SnmpEngine getInstance() throws IOException {
+        return start(new Parameter());
+    }
+
+    /**
+     * Close all shared transports. Pending requests are failed by SNMP4J.
+     */
+    public static void shutdown() {
+        SnmpEngine engine;
+        synchronized (SnmpEngine.class) {
+            engine = instance;
+            instance = null;
+        }
+        if (engine == null) return;
+
+        for (Snmp snmp : engine.sessions) {
+            try {
+                snmp.close();
+            } catch (IOException e) {
+                logger.error("Error closing SNMP session: " + e.toString());
+            }
+        }
+        engine.workerPool.cancel();
+        engine.rateTimer.shutdownNow();
+        engine.windows.clear();
+    }
+
+    /**************************************************************
+     * REQUEST SECTION
+     **************************************************************/
+
+    /**
+     * Queue an asynchronous request for a node as an operation of its own. The request is
+     * sent as soon as the node's in-flight window has room.
+     * @param node Node the request is addressed to
+     * @param target SNMP target for the node
+     * @param pdu Request PDU (GET, GETNEXT or GETBULK)
+     * @return Future completed with the ResponseEvent (response is null on timeout)
+     */
+    public CompletableFuture<ResponseEvent> send(Node node, Target target, PDU pdu) {
+        return send(new Operation(node), target, pdu);
+    }
+
+    /**
+     * Queue an asynchronous request of an operation. The request is sent as soon as the
+     * node's in-flight window has room, or failed at once if the operation was cancelled.
+     * @param operation Operation the request belongs to
+     * @param target SNMP target for the node
+     * @param pdu Request PDU (GET, GETNEXT or GETBULK)
+     * @return Future completed with the ResponseEvent (response is null on timeout)
+     */
+    public CompletableFuture<ResponseEvent> send(Operation operation, Target target, PDU pdu) {
+        PendingRequest request = new PendingRequest(operation, pdu, target);
+        window(operation.node).submit(request);
+        return request.future;
+    }
+
+    /**
+     * Cancel the queued requests of an operation and fail its new ones. Requests already on
+     * the wire finish normally. Used when a poll failed or timed out, so its remaining
+     * batches do not wait for their own timeouts; other operations on the node are not affected.
+     * @param operation Operation to cancel
+     * @param reason Reason given to the cancelled futures
+     */
+    public void cancel(Operation operation, String reason) {
+        List<PendingRequest> cancelled;
+        synchronized (this) {
+            cancelled = window(operation.node).cancel(operation, reason);
+        }
+        CancellationException error = new CancellationException(reason);
+        for (PendingRequest request : cancelled) {
+            request.future.completeExceptionally(error);
+        }
+        if (!cancelled.isEmpty()) {
+            logger.info("Cancelled {} queued requests of {}: {}", cancelled.size(), operation.node.getIp(), reason);
+        }
+    }
+
+    /**
+     * Walk a subtree with GETBULK. Steps go through the node's window like any other request,
+     * one step at a time, so several walks of the same node can run side by side.
+     * @param node Node to walk
+     * @param target SNMP v2c target for the node
+     * @param root Root OID of the subtree
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @param consumer Receives every varbind inside the subtree, in walk order
+     * @return Future completed with the number of requests sent, or exceptionally on timeout/error
+     */
+    public CompletableFuture<Integer> walk(Node node, Target target, OID root, int maxRepetitions,
+            Consumer<VariableBinding> consumer) {
+        return walkRange(new Operation(node), target, root, root, null, maxRepetitions, consumer);
+    }
+
+    /**
+     * Walk a subtree with GETBULK as part of an operation, see {@link #walk(Node, Target, OID, int, Consumer)}.
+     * @param operation Operation the walk belongs to
+     * @param target SNMP v2c target for the node
+     * @param root Root OID of the subtree
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @param consumer Receives every varbind inside the subtree, in walk order
+     * @return Future completed with the number of requests sent, or exceptionally on timeout/error/cancel
+     */
+    public CompletableFuture<Integer> walk(Operation operation, Target target, OID root, int maxRepetitions,
+            Consumer<VariableBinding> consumer) {
+        return walkRange(operation, target, root, root, null, maxRepetitions, consumer);
+    }
+
+    /**
+     * Walk the part of a subtree after from and up to and including to. Consecutive ranges
+     * (root, b1], (b1, b2], ..., (bn, end) cover the subtree exactly once and can be walked
+     * side by side.
+     * @param operation Operation the walk belongs to (e.g. one per discovery run of a node)
+     * @param target SNMP v2c target for the node
+     * @param root Root OID of the subtree
+     * @param from Start of the range (exclusive), root or an OID below it
+     * @param to End of the range (inclusive), or null for the end of the subtree
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @param consumer Receives every varbind of the range, in walk order
+     * @return Future completed with the number of requests sent, or exceptionally on timeout/error/cancel
+     */
+    public CompletableFuture<Integer> walkRange(Operation operation, Target target, OID root, OID from, OID to,
+            int maxRepetitions, Consumer<VariableBinding> consumer) {
+        return walkRange(operation, target, root, from, to, maxRepetitions, consumer, null);
+    }
+
+    /**
+     * Walk a range like {@link #walkRange(Operation, Target, OID, OID, OID, int, Consumer)}, sending each
+     * step after the first only once ready() completes. A consumer that cannot keep up holds the
+     * walk back this way without blocking an engine thread.
+     * @param operation Operation the walk belongs to
+     * @param target SNMP v2c target for the node
+     * @param root Root OID of the subtree
+     * @param from Start of the range (exclusive), root or an OID below it
+     * @param to End of the range (inclusive), or null for the end of the subtree
+     * @param maxRepetitions GETBULK max-repetitions per step
+     * @param consumer Receives every varbind of the range, in walk order
+     * @param ready Called before every further step; the step is sent when the returned future completes.
+     *              May be null
+     * @return Future completed with the number of requests sent, or exceptionally on timeout/error/cancel
+     */
+    public CompletableFuture<Integer> walkRange(Operation operation, Target target, OID root, OID from, OID to,
+            int maxRepetitions, Consumer<VariableBinding> consumer, Supplier<CompletableFuture<Void>> ready) {
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        walkStep(operation, target, root, from, to, Math.max(1, maxRepetitions), consumer, ready, 1, done);
+        return done;
+    }
+
+    private void walkStep(Operation operation, Target target, OID root, OID from, OID to, int maxRepetitions,
+            Consumer<VariableBinding> consumer, Supplier<CompletableFuture<Void>> ready, int requests,
+            CompletableFuture<Integer> done) {
+        PDU pdu = new PDU();
+        pdu.setType(PDU.GETBULK);
+        pdu.setNonRepeaters(0);
+        pdu.setMaxRepetitions(maxRepetitions);
+        pdu.add(new VariableBinding(from));
+
+        Node node = operation.node;
+        send(operation, target, pdu).whenComplete((event, error) -> {
+            try {
+                if (error != null) {
+                    done.completeExceptionally(error);
+                    return;
+                }
+                PDU response = event.getResponse();
+                if (response == null) {
+                    done.completeExceptionally(new IOException("Timeout walking " + root + " on " + node.getIp()));
+                    return;
+                }
+                if (response.getErrorStatus() != PDU.noError) {
+                    done.completeExceptionally(new IOException("Error walking " + root + " on " + node.getIp()
+                            + ": " + response.getErrorStatusText()));
+                    return;
+                }
+
+                OID last = from;
+                for (VariableBinding vb : response.getVariableBindings()) {
+                    // Leaving the subtree or the range, end of MIB or a non-increasing OID ends the walk
+                    if (vb.isException() || !vb.getOid().startsWith(root) || vb.getOid().compareTo(last) <= 0
+                            || (to != null && vb.getOid().compareTo(to) > 0)) {
+                        done.complete(requests);
+                        return;
+                    }
+                    consumer.accept(vb);
+                    last = vb.getOid();
+                }
+                if (response.size() == 0) {
+                    done.complete(requests);
+                    return;
+                }
+                OID next = last;
+                if (ready == null) {
+                    walkStep(operation, target, root, next, to, maxRepetitions, consumer, null, requests + 1, done);
+                    return;
+                }
+                ready.get().whenComplete((v, paused) -> {
+                    if (paused != null) {
+                        done.completeExceptionally(paused);
+                    } else {
+                        walkStep(operation, target, root, next, to, maxRepetitions, consumer, ready, requests + 1,
+                                done);
+                    }
+                });
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Time between putting a request on the wire and its response or timeout. Time spent
+     * waiting in the node's queue is not counted.
+     * @param event ResponseEvent of a request sent through this engine
+     * @return Latency in milliseconds
+     */
+    public static long latencyMillis(ResponseEvent event) {
+        Object latencyNanos = event.getUserObject();
+        if (!(latencyNanos instanceof Long)) return 0;
+        return (Long) latencyNanos / 1_000_000L;
+    }
+
+    /**
+     * Shared SNMP session serving the given node.
+     * @param node Node object
+     * @return Snmp session bound to one of the shared transports
+     */
+    public Snmp getSession(Node node) {
+        return sessions[Math.floorMod(node.getId(), sessions.length)];
+    }
+
+    /**
+     * Number of requests currently sent and not yet answered across all nodes.
+     */
+    public synchronized int getInFlightCount() {
+        return globalInFlight;
+    }
+
+    private NodeWindow window(Node node) {
+        return windows.computeIfAbsent(node.getId(), id -> new NodeWindow(getSession(node), windowPerNode,
+                region(node.getRegion()), requestsPerSecondPerNode));
+    }
+
+    private RegionGate region(String name) {
+        return regions.computeIfAbsent(name != null ? name : "default", RegionGate::new);
+    }
+
+    /**************************************************************
+     * SCHEDULING SECTION
+     **************************************************************/
+
+    /**
+     * Sends as many queued requests of a node as its window, its rate limit, its region and
+     * the global limit allow. Must be called with the engine lock held; requests that may go
+     * out are collected in toSend and dispatched by the caller after the lock is released.
+     */
+    private void pump(NodeWindow w, List<Runnable> toSend) {
+        while (!w.queue.isEmpty() && w.inFlight < w.limit) {
+            long waitNanos = w.nanosUntilToken();
+            if (waitNanos > 0) {
+                scheduleRetry(w, waitNanos);
+                return;
+            }
+            RegionGate r = w.region;
+            if (regionConcurrency > 0 && r.inFlight >= regionConcurrency) {
+                r.enqueue(w);
+                return;
+            }
+            if (globalConcurrency > 0 && globalInFlight >= globalConcurrency) {
+                r.enqueue(w);
+                if (!r.waitingGlobal) {
+                    r.waitingGlobal = true;
+                    globalQueue.add(r);
+                }
+                return;
+            }
+
+            w.takeToken();
+            w.inFlight++;
+            r.inFlight++;
+            globalInFlight++;
+            PendingRequest request = w.queue.poll();
+            toSend.add(() -> w.dispatch(request));
+        }
+    }
+
+    // A response freed one slot at node, region and global level; hand the slots on
+    private void release(NodeWindow w, List<Runnable> toSend) {
+        w.inFlight--;
+        w.region.inFlight--;
+        globalInFlight--;
+
+        pump(w, toSend);
+        pumpRegion(w.region, toSend);
+        while (!globalQueue.isEmpty() && (globalConcurrency <= 0 || globalInFlight < globalConcurrency)) {
+            RegionGate r = globalQueue.poll();
+            r.waitingGlobal = false;
+            pumpRegion(r, toSend);
+        }
+    }
+
+    // Lets nodes waiting in a region's queue use the region's free slots
+    private void pumpRegion(RegionGate r, List<Runnable> toSend) {
+        while (!r.queue.isEmpty()
+                && (regionConcurrency <= 0 || r.inFlight < regionConcurrency)
+                && (globalConcurrency <= 0 || globalInFlight < globalConcurrency)) {
+            NodeWindow waiting = r.queue.poll();
+            waiting.waitingRegion = false;
+            pump(waiting, toSend);
+        }
+    }
+
+    // Try a rate-limited node again once its next token is due
+    private void scheduleRetry(NodeWindow w, long waitNanos) {
+        if (w.retryScheduled) return;
+        w.retryScheduled = true;
+        rateTimer.schedule(() -> {
+            List<Runnable> toSend = new ArrayList<>();
+            synchronized (this) {
+                w.retryScheduled = false;
+                pump(w, toSend);
+            }
+            toSend.forEach(Runnable::run);
+        }, waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Requests that are cancelled together: one poll of a node, one discovery walk, one probe.
+     * Create a new one for every run; a cancelled operation stays cancelled.
+     */
+    public static final class Operation {
+        private final Node node;
+        // Guarded by the engine lock
+        private String cancelReason;     // non-null once cancelled
+        private int consecutiveTimeouts;
+
+        /**
+         * @param node Node the operation's requests are addressed to
+         */
+        public Operation(Node node) {
+            this.node = node;
+        }
+
+        /**
+         * @return Node the operation's requests are addressed to
+         */
+        public Node getNode() {
+            return node;
+        }
+    }
+
+    /**
+     * A queued request and the future handed back to the caller.
+     */
+    private static final class PendingRequest {
+        final Operation operation;
+        final PDU pdu;
+        final Target target;
+        final CompletableFuture<ResponseEvent> future = new CompletableFuture<>();
+
+        PendingRequest(Operation operation, PDU pdu, Target target) {
+            this.operation = operation;
+            this.pdu = pdu;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Per-region count of requests on the wire and FIFO of nodes waiting for a region slot.
+     */
+    private static final class RegionGate {
+        final String name;
+        final ArrayDeque<NodeWindow> queue = new ArrayDeque<>();
+        int inFlight;
+        boolean waitingGlobal;
+
+        RegionGate(String name) {
+            this.name = name;
+        }
+
+        void enqueue(NodeWindow w) {
+            if (!w.waitingRegion) {
+                w.waitingRegion = true;
+                queue.add(w);
+            }
+        }
+    }
+
+    /**
+     * Per-node FIFO of pending requests, the count of requests on the wire and a token
+     * bucket for the requests-per-second limit. Guarded by the engine lock.
+     */
+    private final class NodeWindow {
+        private final Snmp snmp;
+        private final int limit;
+        private final RegionGate region;
+        private final double ratePerSecond;
+        private final ArrayDeque<PendingRequest> queue = new ArrayDeque<>();
+        private int inFlight;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private boolean waitingRegion;
+        private boolean retryScheduled;
+
+        NodeWindow(Snmp snmp, int limit, RegionGate region, double ratePerSecond) {
+            this.snmp = snmp;
+            this.limit = limit;
+            this.region = region;
+            this.ratePerSecond = ratePerSecond;
+            this.tokens = Math.max(1, ratePerSecond);
+        }
+
+        void submit(PendingRequest request) {
+            List<Runnable> toSend = new ArrayList<>();
+            String rejected;
+            synchronized (SnmpEngine.this) {
+                rejected = request.operation.cancelReason;
+                if (rejected == null) {
+                    queue.add(request);
+                    pump(this, toSend);
+                }
+            }
+            if (rejected != null) {
+                request.future.completeExceptionally(new CancellationException(rejected));
+            }
+            toSend.forEach(Runnable::run);
+        }
+
+        // Removes the operation's requests from the queue and rejects its new ones; caller holds the engine lock
+        List<PendingRequest> cancel(Operation operation, String reason) {
+            if (operation.cancelReason == null) {
+                operation.cancelReason = reason;
+            }
+            List<PendingRequest> cancelled = new ArrayList<>();
+            queue.removeIf(request -> {
+                if (request.operation != operation) return false;
+                cancelled.add(request);
+                return true;
+            });
+            return cancelled;
+        }
+
+        // Counts consecutive timeouts of an operation and cancels it when there are too many
+        private void recordOutcome(Operation operation, boolean timedOut) {
+            List<PendingRequest> cancelled = null;
+            String reason = null;
+            synchronized (SnmpEngine.this) {
+                operation.consecutiveTimeouts = timedOut ? operation.consecutiveTimeouts + 1 : 0;
+                if (nodeMaxTimeouts > 0 && operation.consecutiveTimeouts >= nodeMaxTimeouts
+                        && operation.cancelReason == null) {
+                    reason = operation.consecutiveTimeouts + " consecutive timeouts";
+                    cancelled = cancel(operation, reason);
+                }
+            }
+            if (cancelled != null) {
+                CancellationException error = new CancellationException(reason);
+                for (PendingRequest request : cancelled) {
+                    request.future.completeExceptionally(error);
+                }
+                logger.info("Operation on {} failed after {}, cancelled {} queued requests",
+                        operation.node.getIp(), reason, cancelled.size());
+            }
+        }
+
+        // Refills the bucket (burst of one second) and returns the wait for the next token
+        long nanosUntilToken() {
+            if (ratePerSecond <= 0) return 0;
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, ratePerSecond), tokens + (now - lastRefill) * ratePerSecond / 1e9);
+            lastRefill = now;
+            return tokens >= 1 ? 0 : (long) ((1 - tokens) * 1e9 / ratePerSecond) + 1;
+        }
+
+        void takeToken() {
+            if (ratePerSecond > 0) tokens -= 1;
+        }
+
+        private void release() {
+            List<Runnable> toSend = new ArrayList<>();
+            synchronized (SnmpEngine.this) {
+                SnmpEngine.this.release(this, toSend);
+            }
+            toSend.forEach(Runnable::run);
+        }
+
+        private void dispatch(PendingRequest request) {
+            ResponseListener listener = new ResponseListener() {
+                @Override
+                public void onResponse(ResponseEvent event) {
+                    // Async requests must be cancelled explicitly to stop retransmission
+                    ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                    // Counted before the slot is handed on, so a failed operation sends nothing more
+                    recordOutcome(request.operation, event.getResponse() == null);
+                    release();
+                    // Replace the dispatch time by the measured latency, see latencyMillis()
+                    long latencyNanos = System.nanoTime() - (Long) event.getUserObject();
+                    request.future.complete(new ResponseEvent(event.getSource(), event.getPeerAddress(),
+                            event.getRequest(), event.getResponse(), latencyNanos, event.getError()));
+                }
+            };
+            try {
+                // The dispatch time travels as user object
+                snmp.send(request.pdu, request.target, System.nanoTime(), listener);
+            } catch (IOException | RuntimeException e) {
+                release();
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.snmp;
+
+/**
+ * How DbWriter saves polled metrics to onuserial.
+ */
+public enum WriteStrategy {
+    BATCH,      // JDBC batch of UPDATE ... WHERE id=? per ONU
+    LOAD_DATA;  // LOAD DATA LOCAL INFILE into a staging table, then one UPDATE ... JOIN
+
+    /**
+     * Parse a strategy name as stored in the database.
+     * @param value Strategy name (case-insensitive), may be null
+     * @param defaultValue Strategy used when value is empty or unknown
+     * @return Matching WriteStrategy
+     */
+    public static WriteStrategy fromString(String value, WriteStrategy defaultValue) {
+        if (value == null || value.trim().isEmpty()) return defaultValue;
+        for (WriteStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(value.trim())) return strategy;
+        }
+        return defaultValue;
+    }
+}
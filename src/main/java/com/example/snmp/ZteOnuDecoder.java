@@ -0,0 +1,33 @@
+package com.example.snmp;
+
+/**
+ * ZTE OLTs (node types up to 10): rx power in 0.01 dBm (positive = no signal), OLT rx power
+ * as an offset from 100 dBm in 0.01 dB, temperature in degrees (above 100 = not reported).
+ */
+public class ZteOnuDecoder implements OnuMetricDecoder {
+
+    @Override
+    public String vendor() {
+        return "zte";
+    }
+
+    @Override
+    public boolean hasTemperature() {
+        return true;
+    }
+
+    @Override
+    public float rxPower(float raw) {
+        return (raw > 0) ? 0f : (raw / 100f);
+    }
+
+    @Override
+    public float oltRxPower(float raw) {
+        return ((raw / 100f) > 100f) ? 0f : (100f - raw / 100f);
+    }
+
+    @Override
+    public float temperature(float raw) {
+        return (raw > 100f) ? 0f : raw;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.snmp;
+
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+/**
+ * AIMD steps of the adaptive batch size and the cap set by tooBig.
+ * Controllers are kept per node ID for the whole JVM, so every test uses its own IDs.
+ */
+public class BatchSizeControllerTest extends TestCase {
+
+    private static Parameter parameter(int start, int min, int max) {
+        Parameter parameter = new Parameter();
+        parameter.setBatchSize(start);
+        parameter.setMinBatchSize(min);
+        parameter.setMaxBatchSize(max);
+        parameter.setTargetLatencyMs(100);
+        return parameter;
+    }
+
+    public void testAdditiveIncreaseUpToMax() {
+        BatchSizeController controller = BatchSizeController.forNode(-101, parameter(10, 1, 13));
+        assertEquals(10, controller.current());
+        controller.onSuccess(50);
+        assertEquals(11, controller.current());
+        controller.onSuccess(100);  // at the target still counts as fast
+        assertEquals(12, controller.current());
+        controller.onSuccess(10);
+        controller.onSuccess(10);
+        controller.onSuccess(10);
+        assertEquals(13, controller.current());
+    }
+
+    public void testMultiplicativeDecrease() {
+        BatchSizeController controller = BatchSizeController.forNode(-102, parameter(40, 2, 50));
+        controller.onSuccess(101);
+        assertEquals(30, controller.current());
+        controller.onTimeout();
+        assertEquals(15, controller.current());
+        controller.onTimeout();
+        assertEquals(7, controller.current());
+        controller.onTimeout();
+        controller.onTimeout();
+        assertEquals(2, controller.current());  // never below the minimum
+    }
+
+    public void testTooBigCapsBelowRefusedSize() {
+        BatchSizeController controller = BatchSizeController.forNode(-103, parameter(40, 1, 50));
+        controller.onTooBig(40);
+        assertEquals(20, controller.current());
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(10);
+        }
+        assertEquals(39, controller.current());
+
+        // A smaller refusal lowers the cap again; a larger one does not raise it
+        controller.onTooBig(30);
+        assertEquals(15, controller.current());
+        controller.onTooBig(45);
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(10);
+        }
+        assertEquals(29, controller.current());
+    }
+
+    public void testTooBigAtMinimum() {
+        BatchSizeController controller = BatchSizeController.forNode(-104, parameter(1, 1, 50));
+        controller.onTooBig(1);
+        controller.onSuccess(10);
+        assertEquals(1, controller.current());
+    }
+
+    public void testStartsFromLearnedSize() {
+        BatchSizeController.preload(Collections.singletonMap(-105, 23));
+        BatchSizeController controller = BatchSizeController.forNode(-105, parameter(5, 1, 50));
+        assertEquals(23, controller.current());
+        assertEquals(Integer.valueOf(23), BatchSizeController.snapshot().get(-105));
+    }
+}
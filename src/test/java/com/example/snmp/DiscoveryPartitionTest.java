@@ -0,0 +1,197 @@
+package com.example.snmp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.TestCase;
+
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+/**
+ * Discovery walks cut at OidSuffixIndex.partitionArcs must cover each column exactly once:
+ * the boundaries increase strictly, and the SnmpEngine.walkRange ranges they give are
+ * contiguous and do not overlap.
+ */
+public class DiscoveryPartitionTest extends TestCase {
+
+    private static final String COLUMN = "1.3.6.1.4.1.99.1.3";
+    private static final long[] PORTS = { 268501248, 268501504, 268501760, 268502016, 268566784, 268567040 };
+    private static final int[] ONUS = { 40, 3, 17, 64, 1, 28 };
+
+    private final TreeMap<OID, Variable> mib = new TreeMap<>();
+    private final OidSuffixIndex index = new OidSuffixIndex(COLUMN, 256);
+
+    @Override
+    protected void setUp() {
+        int id = 0;
+        for (int p = 0; p < PORTS.length; p++) {
+            for (int onu = 1; onu <= ONUS[p]; onu++) {
+                String oid = COLUMN + "." + PORTS[p] + "." + onu;
+                index.put(oid, ++id);
+                mib.put(new OID(oid), new Integer32(id));
+            }
+        }
+        // Neighbours of the column, which no range may return
+        mib.put(new OID("1.3.6.1.4.1.99.1.2.1.1"), new Integer32(-1));
+        mib.put(new OID("1.3.6.1.4.1.99.1.4.1.1"), new Integer32(-2));
+    }
+
+    public void testBoundariesIncreaseStrictly() {
+        for (int partitions = 1; partitions <= 10; partitions++) {
+            long[] boundaries = index.partitionArcs(partitions);
+            assertTrue(boundaries.length <= Math.min(partitions - 1, PORTS.length - 1));
+            for (int i = 0; i < boundaries.length; i++) {
+                assertTrue(boundaries[i] > PORTS[0]);
+                if (i > 0) assertTrue(boundaries[i] > boundaries[i - 1]);
+            }
+        }
+        assertEquals(0, index.partitionArcs(1).length);
+        assertEquals(0, new OidSuffixIndex(COLUMN, 16).partitionArcs(4).length);
+    }
+
+    public void testRangesCoverEveryRowOnce() {
+        for (int partitions = 1; partitions <= 8; partitions++) {
+            long[] boundaries = index.partitionArcs(partitions);
+            OID root = new OID(COLUMN);
+            int[] perRange = new int[boundaries.length + 1];
+            for (OID oid : mib.keySet()) {
+                if (!oid.startsWith(root)) continue;
+                int hits = 0;
+                OID from = root;
+                for (int r = 0; r <= boundaries.length; r++) {
+                    OID to = r < boundaries.length ? new OID(root).append((int) boundaries[r]) : null;
+                    if (oid.compareTo(from) > 0 && (to == null || oid.compareTo(to) <= 0)) {
+                        hits++;
+                        perRange[r]++;
+                    }
+                    from = to;
+                }
+                assertEquals(oid.toString(), 1, hits);
+            }
+            for (int count : perRange) {
+                assertTrue("empty range with " + partitions + " partitions", count > 0);
+            }
+        }
+    }
+
+    public void testWalkRangesAgainstAgent() throws Exception {
+        Agent agent = new Agent(mib);
+        Parameter parameter = new Parameter();
+        parameter.setThreadPerNode(4);
+        SnmpEngine engine = SnmpEngine.start(parameter);
+        try {
+            Node node = new Node();
+            node.setId(-22);
+            node.setIp("127.0.0.1");
+            CommunityTarget target = new CommunityTarget(agent.address, new OctetString("public"));
+            target.setVersion(SnmpConstants.version2c);
+            target.setTimeout(2000);
+
+            OID root = new OID(COLUMN);
+            long[] boundaries = index.partitionArcs(8);
+            assertTrue(boundaries.length > 1);
+            SnmpEngine.Operation operation = new SnmpEngine.Operation(node);
+            List<List<OID>> ranges = new ArrayList<>();
+            List<CompletableFuture<Integer>> walks = new ArrayList<>();
+            OID from = root;
+            for (int r = 0; r <= boundaries.length; r++) {
+                OID to = r < boundaries.length ? new OID(root).append((int) boundaries[r]) : null;
+                List<OID> seen = new ArrayList<>();
+                ranges.add(seen);
+                // Small steps, so ranges end in the middle of a response too
+                walks.add(engine.walkRange(operation, target, root, from, to, 7, vb -> {
+                    synchronized (seen) {
+                        seen.add(vb.getOid());
+                    }
+                }));
+                from = to;
+            }
+            CompletableFuture.allOf(walks.toArray(new CompletableFuture<?>[0])).get();
+
+            List<OID> walked = new ArrayList<>();
+            for (List<OID> range : ranges) {
+                assertFalse(range.isEmpty());
+                if (!walked.isEmpty()) {
+                    assertTrue(range.get(0).compareTo(walked.get(walked.size() - 1)) > 0);
+                }
+                walked.addAll(range);
+            }
+            Set<OID> unique = new HashSet<>(walked);
+            assertEquals(walked.size(), unique.size());
+            assertEquals(new ArrayList<>(mib.subMap(root, false, root.nextPeer(), false).keySet()), walked);
+        } finally {
+            SnmpEngine.shutdown();
+            agent.close();
+        }
+    }
+
+    /**
+     * Answers GETBULK from a sorted map on a local UDP port.
+     */
+    private static final class Agent implements CommandResponder {
+        private final TreeMap<OID, Variable> mib;
+        private final Snmp snmp;
+        private final UdpAddress address;
+
+        Agent(TreeMap<OID, Variable> mib) throws IOException {
+            this.mib = mib;
+            DefaultUdpTransportMapping transport = new DefaultUdpTransportMapping(new UdpAddress("127.0.0.1/0"));
+            snmp = new Snmp(transport);
+            snmp.addCommandResponder(this);
+            snmp.listen();
+            address = transport.getListenAddress();
+        }
+
+        void close() throws IOException {
+            snmp.close();
+        }
+
+        @Override
+        public synchronized void processPdu(CommandResponderEvent event) {
+            PDU request = event.getPDU();
+            PDU response = new PDU();
+            response.setType(PDU.RESPONSE);
+            response.setRequestID(request.getRequestID());
+            for (VariableBinding vb : request.getVariableBindings()) {
+                OID current = vb.getOid();
+                for (int r = 0; r < Math.max(1, request.getMaxRepetitions()); r++) {
+                    Map.Entry<OID, Variable> next = mib.higherEntry(current);
+                    if (next == null) {
+                        response.add(new VariableBinding(current, Null.endOfMibView));
+                        break;
+                    }
+                    response.add(new VariableBinding(next.getKey(), next.getValue()));
+                    current = next.getKey();
+                }
+            }
+            try {
+                event.getMessageDispatcher().returnResponsePdu(event.getMessageProcessingModel(),
+                        event.getSecurityModel(), event.getSecurityName(), event.getSecurityLevel(), response,
+                        event.getMaxSizeResponsePDU(), event.getStateReference(), new StatusInformation());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            event.setProcessed(true);
+        }
+    }
+}
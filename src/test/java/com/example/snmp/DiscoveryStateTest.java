@@ -0,0 +1,117 @@
+package com.example.snmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * Port fingerprints, the ports an incremental discovery walks again, and the state file
+ * that carries them to the next run. States are kept in memory per id@ip for the whole JVM,
+ * so every test uses its own node IDs.
+ */
+public class DiscoveryStateTest extends TestCase {
+
+    private static final String COLUMN = "1.3.6.1.4.1.99.1.5";
+
+    private static Map<Long, Long> ports(long... portAndPrint) {
+        Map<Long, Long> ports = new HashMap<>();
+        for (int i = 0; i < portAndPrint.length; i += 2) {
+            ports.put(portAndPrint[i], portAndPrint[i + 1]);
+        }
+        return ports;
+    }
+
+    private static Node node(int id, String ip) {
+        Node node = new Node();
+        node.setId(id);
+        node.setIp(ip);
+        return node;
+    }
+
+    public void testChangedPorts() {
+        DiscoveryState state = new DiscoveryState(0, true, ports(268501504, 7, 268501248, 5, 268566784, 9));
+
+        // Unchanged
+        assertEquals(0, state.changedPorts(ports(268501248, 5, 268501504, 7, 268566784, 9)).length);
+
+        // Changed and new ports in ascending order; a port that disappeared is not returned
+        long[] changed = state.changedPorts(ports(268566784, 10, 268501248, 5, 268567040, 1, 268500992, 3));
+        assertTrue(Arrays.toString(changed), Arrays.equals(new long[] { 268500992, 268566784, 268567040 }, changed));
+
+        assertEquals(ports(1, 2), state.withPorts(ports(1, 2)).getPorts());
+        assertEquals(0, state.withPorts(ports(1, 2)).getFullSyncMillis());
+    }
+
+    public void testFullSyncDue() {
+        long now = 1_000_000_000L;
+        DiscoveryState state = new DiscoveryState(now - 3_600_000L, true, ports(1, 1));
+        assertFalse(state.isFullSyncDue(now, 3601));
+        assertTrue(state.isFullSyncDue(now, 3600));
+        // Without a port level nothing can be walked partially
+        assertTrue(new DiscoveryState(now, false, ports(1, 1)).isFullSyncDue(now, 86400));
+    }
+
+    public void testFingerprintsIgnoreOrder() {
+        OID root = new OID(COLUMN);
+        VariableBinding[] rows = {
+            new VariableBinding(new OID(COLUMN + ".268501248.1"), new OctetString("2026-10-17 08:00:00")),
+            new VariableBinding(new OID(COLUMN + ".268501248.2"), new OctetString("2026-10-16 21:13:05")),
+            new VariableBinding(new OID(COLUMN + ".268501504.1"), new Integer32(4)),
+            new VariableBinding(new OID("1.3.6.1.4.1.99.1.6.268501248.1"), new Integer32(1)),
+        };
+        DiscoveryState.PortFingerprints forward = new DiscoveryState.PortFingerprints(root);
+        DiscoveryState.PortFingerprints backward = new DiscoveryState.PortFingerprints(root);
+        for (int i = 0; i < rows.length; i++) {
+            forward.add(rows[i]);
+            backward.add(rows[rows.length - 1 - i]);
+        }
+        assertTrue(forward.isPortIndexed());
+        assertEquals(2, forward.toMap().size());
+        assertEquals(forward.toMap(), backward.toMap());
+
+        // A new last-online time changes only that port's fingerprint
+        DiscoveryState.PortFingerprints later = new DiscoveryState.PortFingerprints(root);
+        later.add(rows[0]);
+        later.add(new VariableBinding(rows[1].getOid(), new OctetString("2026-10-17 09:30:00")));
+        later.add(rows[2]);
+        DiscoveryState state = new DiscoveryState(0, true, forward.toMap());
+        assertTrue(Arrays.equals(new long[] { 268501248 }, state.changedPorts(later.toMap())));
+
+        DiscoveryState.PortFingerprints flat = new DiscoveryState.PortFingerprints(root);
+        flat.add(new VariableBinding(new OID(COLUMN + ".17"), new Integer32(1)));
+        assertFalse(flat.isPortIndexed());
+    }
+
+    public void testStateFileRoundTrip() throws IOException {
+        File dir = Files.createTempDirectory("discovery-state-test").toFile();
+        Parameter parameter = new Parameter();
+        parameter.setDiscoveryStateDir(dir.getPath());
+
+        Map<Long, Long> ports = ports(268501248, -5, 268501504, Long.MAX_VALUE, 4294967295L, 0);
+        DiscoveryState.put(parameter, node(-231, "10.0.0.1"), new DiscoveryState(1_792_000_000_000L, true, ports));
+        assertTrue(new File(dir, "discovery--231.state").isFile());
+        assertFalse(new File(dir, "discovery--231.state.tmp").exists());
+
+        // Another address misses the memory cache and reads the file
+        DiscoveryState read = DiscoveryState.get(parameter, node(-231, "10.0.0.2"));
+        assertNotNull(read);
+        assertEquals(1_792_000_000_000L, read.getFullSyncMillis());
+        assertTrue(read.isPortIndexed());
+        assertEquals(ports, read.getPorts());
+
+        // A file written for another node is ignored
+        Files.copy(new File(dir, "discovery--231.state").toPath(), new File(dir, "discovery--232.state").toPath());
+        assertNull(DiscoveryState.get(parameter, node(-232, "10.0.0.1")));
+        assertNull(DiscoveryState.get(parameter, node(-233, "10.0.0.1")));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.snmp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Rows are written when a metric moved beyond its threshold, when the refresh is due, or when
+ * their last values were never confirmed written.
+ */
+public class LastValueCacheTest extends TestCase {
+
+    // Serial IDs on two cache pages
+    private static final int[] SERIAL_IDS = { 11, 12, 13, 4096 + 11 };
+
+    private static final OnuMetricDecoder IDENTITY = new OnuMetricDecoder() {
+        public String vendor() {
+            return "TEST";
+        }
+        public boolean hasTemperature() {
+            return true;
+        }
+        public float rxPower(float raw) {
+            return raw;
+        }
+        public float oltRxPower(float raw) {
+            return raw;
+        }
+        public float temperature(float raw) {
+            return raw;
+        }
+    };
+
+    private final List<NodeSerialOid> plan = new ArrayList<>();
+
+    @Override
+    protected void setUp() {
+        for (int serialId : SERIAL_IDS) {
+            NodeSerialOid nso = new NodeSerialOid();
+            nso.setSerialId(serialId);
+            plan.add(nso);
+        }
+    }
+
+    private static Parameter parameter(int refreshSeconds) {
+        Parameter parameter = new Parameter();
+        parameter.setDeltaRxDb(0.1f);
+        parameter.setDeltaOltRxDb(0.5f);
+        parameter.setDeltaDistanceM(0);
+        parameter.setDeltaTemperature(1f);
+        parameter.setDeltaRefreshSeconds(refreshSeconds);
+        return parameter;
+    }
+
+    private OnuMetricBlock block(float[] rx, float[] oltRx, int[] distance, float[] temperature) {
+        OnuMetricBlock block = new OnuMetricBlock(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            block.setRaw(i, rx[i], distance[i], oltRx[i], temperature[i]);
+        }
+        block.convert(IDENTITY);
+        return block;
+    }
+
+    private int[] written(LastValueCache cache, OnuMetricBlock results) {
+        int[] slots = cache.changedSlots(plan, results);
+        cache.written(new DbWriter.Chunk(plan, results, slots, 0, slots.length));
+        return slots;
+    }
+
+    public void testThresholds() {
+        LastValueCache cache = new LastValueCache(parameter(3600));
+        float[] rx = { -20f, -20f, -20f, -20f };
+        float[] oltRx = { -25f, -25f, -25f, -25f };
+        int[] distance = { 1200, 1200, 1200, 1200 };
+        float[] temperature = { 40f, 40f, 40f, 40f };
+        assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3 }, written(cache, block(rx, oltRx, distance, temperature))));
+
+        // Within every threshold: nothing to write
+        rx = new float[] { -20.0625f, -19.9375f, -20f, -20f };
+        oltRx = new float[] { -25.25f, -25f, -24.75f, -25f };
+        temperature = new float[] { 40.5f, 40f, 39.5f, 40f };
+        assertEquals(0, written(cache, block(rx, oltRx, distance, temperature)).length);
+
+        // One metric beyond its threshold per row; distance reacts to any change
+        rx = new float[] { -20.25f, -20f, -20f, -20f };
+        oltRx = new float[] { -25f, -25f, -25f, -25f };
+        distance = new int[] { 1200, 1201, 1200, 1200 };
+        temperature = new float[] { 40f, 40f, 41.5f, 40f };
+        assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, written(cache, block(rx, oltRx, distance, temperature))));
+
+        // Compared with the values last written, not with the last poll
+        rx = new float[] { -20.25f, -20f, -20f, -20.0625f };
+        distance = new int[] { 1200, 1201, 1200, 1200 };
+        temperature = new float[] { 40f, 40f, 41.5f, 40f };
+        assertEquals(0, written(cache, block(rx, oltRx, distance, temperature)).length);
+        rx = new float[] { -20.25f, -20f, -20f, -20.125f };
+        assertTrue(Arrays.equals(new int[] { 3 }, written(cache, block(rx, oltRx, distance, temperature))));
+
+        long[] stats = cache.takeStats();
+        assertEquals(20, stats[0]);
+        assertEquals(12, stats[1]);
+        assertEquals(0, cache.takeStats()[0]);
+    }
+
+    public void testRefreshDue() {
+        LastValueCache cache = new LastValueCache(parameter(0));
+        OnuMetricBlock results = block(new float[] { -20f, -20f, -20f, -20f }, new float[] { -25f, -25f, -25f, -25f },
+                new int[] { 1200, 1200, 1200, 1200 }, new float[] { 40f, 40f, 40f, 40f });
+        written(cache, results);
+        assertEquals(4, written(cache, results).length);
+    }
+
+    public void testNotWrittenStaysChanged() {
+        LastValueCache cache = new LastValueCache(parameter(3600));
+        OnuMetricBlock results = block(new float[] { -20f, -20f, -20f, -20f }, new float[] { -25f, -25f, -25f, -25f },
+                new int[] { 1200, 1200, 1200, 1200 }, new float[] { 40f, 40f, 40f, 40f });
+        // A failed write does not call written(), so the rows are due again
+        assertEquals(4, cache.changedSlots(plan, results).length);
+        assertEquals(4, cache.changedSlots(plan, results).length);
+
+        // Only the written part of the rows is remembered
+        int[] slots = cache.changedSlots(plan, results);
+        cache.written(new DbWriter.Chunk(plan, results, slots, 0, 2));
+        assertTrue(Arrays.equals(new int[] { 2, 3 }, cache.changedSlots(plan, results)));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.snmp;
+
+import java.sql.Timestamp;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.snmp4j.smi.OctetString;
+
+/**
+ * The byte decoders must give exactly what HelperClass gives for the text SNMP4J makes of the
+ * same OctetString.
+ */
+public class OctetStringDecoderTest extends TestCase {
+
+    private final HelperClass hc = new HelperClass();
+
+    public void testZteDateAndTime() {
+        assertSameDate(bytes(0x07, 0xE9, 10, 17, 9, 30, 5, 0));
+        assertSameDate(bytes(0x07, 0xE8, 2, 29, 23, 59, 59, 9));
+        assertSameDate(bytes(0x07, 0xD0, 1, 1, 0, 0, 0));
+    }
+
+    public void testHuaweiDateAndTimeWithOffset() {
+        assertSameDate(bytes(0x07, 0xE9, 10, 17, 9, 30, 5, 0, '+', 5, 45));
+        assertSameDate(bytes(0x07, 0xE9, 1, 1, 0, 0, 0, 0, '-', 3, 30));
+        assertSameDate(bytes(0x07, 0xE9, 12, 31, 23, 59, 59, 0, '+', 18, 0));
+        assertSameDate(bytes(0x07, 0xE9, 12, 31, 23, 59, 59, 0, '+', 18, 1));
+    }
+
+    public void testInvalidDates() {
+        assertSameDate(bytes(0x07, 0xE9, 2, 29, 0, 0, 0, 0));
+        assertSameDate(bytes(0x07, 0xE9, 13, 1, 0, 0, 0, 0));
+        assertSameDate(bytes(0x07, 0xE9, 4, 31, 0, 0, 0, 0));
+        assertSameDate(bytes(0x07, 0xE9, 1, 1, 24, 0, 0, 0));
+        assertSameDate(bytes(0x07, 0xE9, 1, 1, 0, 0, 60, 0));
+        assertSameDate(bytes(0, 0, 0, 0, 0, 0, 0, 0));
+        assertSameDate(bytes(0x07, 0xE9, 1, 1, 0, 0));
+        assertSameDate(new OctetString());
+        assertSameDate(new OctetString("2025-10-17 09:30:05"));
+    }
+
+    public void testRandomDates() {
+        Random random = new Random(2579);
+        for (int i = 0; i < 20000; i++) {
+            byte[] value = new byte[7 + random.nextInt(5)];
+            random.nextBytes(value);
+            if (i % 2 == 0) {
+                // Mostly valid fields, to reach the conversion and not only the range checks
+                value[0] = (byte) (random.nextBoolean() ? 0x07 : random.nextInt(256));
+                value[2] = (byte) (1 + random.nextInt(12));
+                value[3] = (byte) (1 + random.nextInt(31));
+                value[4] = (byte) random.nextInt(24);
+                value[5] = (byte) random.nextInt(60);
+                value[6] = (byte) random.nextInt(60);
+                if (value.length >= 11) {
+                    value[8] = (byte) (random.nextBoolean() ? '+' : '-');
+                    value[9] = (byte) random.nextInt(20);
+                    value[10] = (byte) random.nextInt(60);
+                }
+            }
+            assertSameDate(new OctetString(value));
+        }
+    }
+
+    public void testSerials() {
+        assertSameSerial(bytes('H', 'W', 'T', 'C', 0x1a, 0x2b, 0x3c, 0x4d));
+        assertSameSerial(bytes('z', 't', 'e', 'g', 0x00, 0xff, 0x80, 0x0a));
+        assertSameSerial(bytes(0x01, 'A', 'B', 'C', 0xde, 0xad));
+        assertSameSerial(bytes(0xe9, 'A', 'B', 'C', 0xde, 0xad));
+        assertSameSerial(bytes(0xff, 0x01));
+        assertSameSerial(new OctetString("ZTEG12345678"));
+        assertSameSerial(new OctetString("ab"));
+        assertSameSerial(new OctetString());
+    }
+
+    public void testRandomSerials() {
+        Random random = new Random(8);
+        char[] buffer = new char[4];
+        for (int i = 0; i < 20000; i++) {
+            byte[] value = new byte[random.nextInt(24)];
+            random.nextBytes(value);
+            OctetString serial = new OctetString(value);
+            assertEquals(serial.toHexString(), hc.macToCustomFormat(serial.toString()),
+                    hc.macToCustomFormat(serial, buffer));
+        }
+    }
+
+    private void assertSameDate(OctetString value) {
+        Timestamp expected = hc.parseSnmpDate(value.toString());
+        assertEquals(value.toHexString(), expected, hc.parseSnmpDate(value));
+    }
+
+    private void assertSameSerial(OctetString value) {
+        assertEquals(value.toHexString(), hc.macToCustomFormat(value.toString()),
+                hc.macToCustomFormat(value, new char[64]));
+    }
+
+    private static OctetString bytes(int... values) {
+        byte[] value = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            value[i] = (byte) values[i];
+        }
+        return new OctetString(value);
+    }
+}
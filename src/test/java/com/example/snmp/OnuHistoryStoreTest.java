@@ -0,0 +1,153 @@
+package com.example.snmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Samples appended to the history store must read back exactly, across a day (segment)
+ * boundary and a serial ID page boundary. Slots that were not decoded are not stored.
+ */
+public class OnuHistoryStoreTest extends TestCase {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    // First serial page, same page, next page (65536 serial IDs per segment)
+    private static final int[] SERIAL_IDS = { 5, 6, 70_000 };
+
+    private static OnuHistoryStore store;
+
+    // Converts nothing, so the stored values are the values set in the block
+    private static final OnuMetricDecoder IDENTITY = new OnuMetricDecoder() {
+        public String vendor() {
+            return "TEST";
+        }
+        public boolean hasTemperature() {
+            return true;
+        }
+        public float rxPower(float raw) {
+            return raw;
+        }
+        public float oltRxPower(float raw) {
+            return raw;
+        }
+        public float temperature(float raw) {
+            return raw;
+        }
+    };
+
+    @Override
+    protected void setUp() throws IOException {
+        if (store == null) {
+            File dir = Files.createTempDirectory("onu-history-test").toFile();
+            Parameter parameter = new Parameter();
+            parameter.setHistoryDir(dir.getPath());
+            parameter.setHistorySlotBytes(8192);
+            store = OnuHistoryStore.start(parameter);
+        }
+        assertNotNull(store);
+    }
+
+    public void testRoundTripAcrossDays() {
+        List<NodeSerialOid> plan = plan();
+        Map<Integer, List<OnuHistoryStore.Sample>> expected = new HashMap<>();
+        for (int serialId : SERIAL_IDS) {
+            expected.put(serialId, new ArrayList<>());
+        }
+
+        // From 22:00 of one day into the next, with irregular poll intervals
+        long day = 20_000;
+        long time = day * DAY_MILLIS + 22 * 3_600_000L;
+        long[] steps = { 60_000, 60_000, 61_000, 300_000, 59_000, 900_000, 1_000, 5_000_000, 60_000 };
+        Random random = new Random(16);
+        for (int poll = 0; poll < 40; poll++) {
+            OnuMetricBlock block = new OnuMetricBlock(plan.size());
+            for (int slot = 0; slot < plan.size(); slot++) {
+                if (slot == 1 && poll % 3 == 0) {
+                    block.setInvalid(slot);
+                    continue;
+                }
+                float rx = poll % 4 == 0 ? -21.5f : -15f - random.nextInt(2000) / 100f;
+                int distance = 1200 + slot * 10 + (poll % 5 == 0 ? 1 : 0);
+                float oltRx = slot == 2 ? 0f : -random.nextFloat() * 30f;
+                float temperature = poll % 2 == 0 ? 0f : 35f + random.nextInt(100) / 10f;
+                block.setRaw(slot, rx, distance, oltRx, temperature);
+                expected.get(plan.get(slot).getSerialId())
+                        .add(new OnuHistoryStore.Sample(time, rx, oltRx, distance, temperature));
+            }
+            block.convert(IDENTITY);
+            store.append(plan, block, time);
+            time += steps[poll % steps.length];
+        }
+        assertTrue("samples must reach the next day", time > (day + 1) * DAY_MILLIS);
+
+        long from = day * DAY_MILLIS;
+        long to = (day + 2) * DAY_MILLIS;
+        for (int serialId : SERIAL_IDS) {
+            assertSamples(expected.get(serialId), store.query(serialId, from, to));
+
+            // Only the second day's segment
+            List<OnuHistoryStore.Sample> nextDay = new ArrayList<>();
+            for (OnuHistoryStore.Sample s : expected.get(serialId)) {
+                if (s.getTimeMillis() >= (day + 1) * DAY_MILLIS) nextDay.add(s);
+            }
+            assertFalse(nextDay.isEmpty());
+            assertSamples(nextDay, store.query(serialId, (day + 1) * DAY_MILLIS, to));
+        }
+        // Invalid polls of slot 1 are missing, not stored as zeros
+        assertEquals(40 - 14, store.query(SERIAL_IDS[1], from, to).size());
+        assertTrue(store.query(7, from, to).isEmpty());
+    }
+
+    public void testAllZeroSample() {
+        List<NodeSerialOid> plan = plan();
+        long time = 20_010 * DAY_MILLIS + 3_600_000L;
+        OnuMetricBlock block = new OnuMetricBlock(plan.size());
+        block.setRaw(0, 0f, 0, 0f, 0f);
+        block.setInvalid(1);
+        block.setRaw(2, -0f, 0, 0f, 0f);
+        block.convert(IDENTITY);
+        store.append(plan, block, time);
+
+        long from = time - 1;
+        long to = time + 1;
+        List<OnuHistoryStore.Sample> zero = new ArrayList<>();
+        zero.add(new OnuHistoryStore.Sample(time, 0f, 0f, 0f, 0f));
+        assertSamples(zero, store.query(SERIAL_IDS[0], from, to));
+        assertTrue(store.query(SERIAL_IDS[1], from, to).isEmpty());
+        List<OnuHistoryStore.Sample> negativeZero = new ArrayList<>();
+        negativeZero.add(new OnuHistoryStore.Sample(time, -0f, 0f, 0f, 0f));
+        assertSamples(negativeZero, store.query(SERIAL_IDS[2], from, to));
+    }
+
+    private static List<NodeSerialOid> plan() {
+        List<NodeSerialOid> plan = new ArrayList<>();
+        for (int serialId : SERIAL_IDS) {
+            NodeSerialOid nso = new NodeSerialOid();
+            nso.setSerialId(serialId);
+            plan.add(nso);
+        }
+        return plan;
+    }
+
+    private static void assertSamples(List<OnuHistoryStore.Sample> expected, List<OnuHistoryStore.Sample> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            OnuHistoryStore.Sample e = expected.get(i);
+            OnuHistoryStore.Sample a = actual.get(i);
+            String at = "sample " + i + ": " + a;
+            assertEquals(at, e.getTimeMillis(), a.getTimeMillis());
+            assertEquals(at, Float.floatToIntBits(e.getRx()), Float.floatToIntBits(a.getRx()));
+            assertEquals(at, Float.floatToIntBits(e.getOltRx()), Float.floatToIntBits(a.getOltRx()));
+            assertEquals(at, Float.floatToIntBits(e.getDistance()), Float.floatToIntBits(a.getDistance()));
+            assertEquals(at, Float.floatToIntBits(e.getTemperature()), Float.floatToIntBits(a.getTemperature()));
+        }
+    }
+}